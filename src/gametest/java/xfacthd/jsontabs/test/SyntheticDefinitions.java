@@ -0,0 +1,109 @@
+package xfacthd.jsontabs.test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates synthetic tab definitions with a configurable amount of tabs, entries per tab and NBT density
+ */
+public final class SyntheticDefinitions
+{
+    public static final String[] SNBT_SAMPLES = new String[] {
+            "{Enchantments:[{id:\"minecraft:sharpness\",lvl:5s}]}",
+            "{Potion:\"minecraft:strong_healing\"}",
+            "{display:{Name:'{\"text\":\"Named\"}'},CustomModelData:3}",
+            "{EntityTag:{id:\"minecraft:zombie\"}}"
+    };
+
+    /**
+     * Generate definitions referencing made-up items, for use without a running game
+     * @param tabCount The amount of definitions to generate
+     * @param entryCount The amount of content entries per definition
+     * @param nbtRatio The fraction of entries carrying NBT data
+     * @param seed The random seed, the same seed always produces the same definitions
+     * @return The JSON text of each definition
+     */
+    public static List<String> generate(int tabCount, int entryCount, double nbtRatio, long seed)
+    {
+        List<String> itemNames = new ArrayList<>(entryCount * 4);
+        for (int i = 0; i < entryCount * 4; i++)
+        {
+            itemNames.add(itemName(i));
+        }
+        return generate(tabCount, entryCount, nbtRatio, seed, itemNames);
+    }
+
+    /**
+     * @param tabCount The amount of definitions to generate
+     * @param entryCount The amount of content entries per definition
+     * @param nbtRatio The fraction of entries carrying NBT data
+     * @param seed The random seed, the same seed always produces the same definitions
+     * @param itemNames The item names to pick icons and entries from
+     * @return The JSON text of each definition
+     */
+    public static List<String> generate(int tabCount, int entryCount, double nbtRatio, long seed, List<String> itemNames)
+    {
+        Random random = new Random(seed);
+        List<String> definitions = new ArrayList<>(tabCount);
+        for (int tab = 0; tab < tabCount; tab++)
+        {
+            StringBuilder json = new StringBuilder(entryCount * 48);
+            json.append("{\n");
+            json.append("  \"name\": \"bench:tab_").append(tab).append("\",\n");
+            json.append("  \"after\": [").append(tab > 0 ? "\"bench:tab_" + (tab - 1) + "\"" : "").append("],\n");
+            json.append("  \"before\": [],\n");
+            json.append("  \"icon\": \"").append(itemNames.get(tab % itemNames.size())).append("\",\n");
+            json.append("  \"label_color\": \"0x").append(Integer.toHexString(random.nextInt(0xFFFFFF))).append("\",\n");
+            json.append("  \"search_bar\": true,\n");
+            json.append("  \"contents\": [\n");
+            for (int entry = 0; entry < entryCount; entry++)
+            {
+                String item = itemNames.get(random.nextInt(itemNames.size()));
+                json.append("    ");
+                if (random.nextDouble() < nbtRatio)
+                {
+                    String snbt = SNBT_SAMPLES[random.nextInt(SNBT_SAMPLES.length)];
+                    json.append("{ \"name\": \"").append(item).append("\", \"data\": \"").append(escape(snbt)).append("\" }");
+                }
+                else
+                {
+                    json.append('"').append(item).append('"');
+                }
+                json.append(entry < entryCount - 1 ? ",\n" : "\n");
+            }
+            json.append("  ]\n}\n");
+            definitions.add(json.toString());
+        }
+        return definitions;
+    }
+
+    /**
+     * Write the given definitions to individual files in the given directory
+     */
+    public static List<Path> write(Path directory, List<String> definitions) throws IOException
+    {
+        Files.createDirectories(directory);
+        List<Path> files = new ArrayList<>(definitions.size());
+        for (int i = 0; i < definitions.size(); i++)
+        {
+            Path file = directory.resolve("tab_" + i + ".json");
+            Files.writeString(file, definitions.get(i));
+            files.add(file);
+        }
+        return files;
+    }
+
+    public static String itemName(int index)
+    {
+        return "bench:item_" + index;
+    }
+
+    private static String escape(String snbt)
+    {
+        return snbt.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+}
@@ -0,0 +1,146 @@
+package xfacthd.jsontabs.test;
+
+import com.mojang.serialization.JsonOps;
+import net.minecraft.gametest.framework.*;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.util.GsonHelper;
+import net.minecraft.world.item.*;
+import net.minecraftforge.gametest.GameTestHolder;
+import xfacthd.jsontabs.JsonTabs;
+import xfacthd.jsontabs.tabs.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Regression tests for building tabs from definitions, run headless with the {@code gameTestServer} run config.
+ * Tests which need built tabs apply their definitions as a remote layout and restore the local layout afterwards
+ */
+@GameTestHolder(JsonTabs.MODID)
+public final class TabDefinitionTests
+{
+    private static final String BATCH = "jsontabs_definitions";
+    private static final String TEMPLATE = JsonTabs.MODID + ":empty";
+    private static final ResourceLocation INCLUDER = new ResourceLocation("jsontabs_test", "includer");
+    private static final String INCLUDED_JSON = """
+            {
+              "name": "jsontabs_test:included",
+              "after": [],
+              "before": [],
+              "icon": "minecraft:stone",
+              "contents": [ "minecraft:stone" ]
+            }
+            """;
+    private static final String INCLUDER_JSON = """
+            {
+              "name": "jsontabs_test:includer",
+              "after": [],
+              "before": [],
+              "icon": "minecraft:dirt",
+              "contents": [ "minecraft:dirt" ],
+              "include": [ "jsontabs_test:included" ]
+            }
+            """;
+    private static final String BAD_CONDITION_JSON = """
+            {
+              "name": "jsontabs_test:conditions",
+              "after": [],
+              "before": [],
+              "icon": "minecraft:stone",
+              "contents": [
+                { "name": "minecraft:stone", "conditions": { "mods": [ {} ], "toggles": [ "bench" ] } }
+              ]
+            }
+            """;
+
+    @GameTestGenerator
+    public static Collection<TestFunction> generateDefinitionTests()
+    {
+        return List.of(
+                test("removed_include", TabDefinitionTests::removedIncludeShrinksIncluder),
+                test("reader_matches_codec", TabDefinitionTests::readerMatchesCodecOnBadConditionList)
+        );
+    }
+
+    /**
+     * Removing an included tab without touching the including definition must drop the included contents
+     */
+    private static void removedIncludeShrinksIncluder(GameTestHelper helper)
+    {
+        CreativeModeTab.ItemDisplayParameters params = makeParams(helper.getLevel());
+        try
+        {
+            TabDefinition includer = read(INCLUDER_JSON);
+            JsonTabManager.applyRemoteLayout(List.of(read(INCLUDED_JSON), includer));
+            Collection<ItemStack> withInclude = buildContents(INCLUDER, params);
+            helper.assertTrue(withInclude.size() == 2, "Expected the includer to contain 2 items, got " + withInclude.size());
+
+            JsonTabManager.applyRemoteLayout(List.of(includer));
+            Collection<ItemStack> withoutInclude = buildContents(INCLUDER, params);
+            helper.assertTrue(
+                    withoutInclude.size() == 1 && withoutInclude.iterator().next().is(Items.DIRT),
+                    "Expected the includer to only contain dirt after removing the included tab, got " + withoutInclude
+            );
+            helper.succeed();
+        }
+        finally
+        {
+            JsonTabManager.restoreLocalLayout();
+        }
+    }
+
+    /**
+     * The streaming reader must decode the same definition as the codec when one list of an entry's conditions is
+     * invalid, only that list is dropped
+     */
+    private static void readerMatchesCodecOnBadConditionList(GameTestHelper helper)
+    {
+        TabDefinition streamed = read(BAD_CONDITION_JSON);
+        TabDefinition decoded = TabDefinition.CODEC.parse(JsonOps.INSTANCE, GsonHelper.parse(BAD_CONDITION_JSON))
+                .getOrThrow(false, msg -> { throw new GameTestAssertException("Codec failed to decode test definition: " + msg); });
+
+        helper.assertTrue(streamed.equals(decoded), "Reader decoded " + streamed + ", codec decoded " + decoded);
+        EntryConditions conditions = streamed.contents().get(0).conditions();
+        helper.assertTrue(
+                conditions.mods().isEmpty() && conditions.toggles().equals(List.of("bench")),
+                "Expected only the invalid mod list to be dropped, got " + conditions
+        );
+        helper.succeed();
+    }
+
+    private static TestFunction test(String name, Consumer<GameTestHelper> function)
+    {
+        return new TestFunction(BATCH, "tabdefinitiontests." + name, TEMPLATE, 20, 0L, true, function);
+    }
+
+    private static CreativeModeTab.ItemDisplayParameters makeParams(ServerLevel level)
+    {
+        return new CreativeModeTab.ItemDisplayParameters(level.enabledFeatures(), true, level.registryAccess());
+    }
+
+    private static Collection<ItemStack> buildContents(ResourceLocation tabName, CreativeModeTab.ItemDisplayParameters params)
+    {
+        CreativeModeTab tab = JsonTabManager.getTabs().get(tabName);
+        if (tab == null)
+        {
+            throw new GameTestAssertException("Tab '" + tabName + "' wasn't built");
+        }
+        tab.buildContents(params);
+        return tab.getDisplayItems();
+    }
+
+    private static TabDefinition read(String json)
+    {
+        try
+        {
+            return TabDefinitionReader.read(json.getBytes(StandardCharsets.UTF_8));
+        }
+        catch (IOException e)
+        {
+            throw new GameTestAssertException("Failed to read test definition: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,377 @@
+package xfacthd.jsontabs.test;
+
+import com.google.gson.*;
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.gametest.framework.*;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.server.packs.resources.Resource;
+import net.minecraft.util.GsonHelper;
+import net.minecraft.world.item.*;
+import net.minecraftforge.gametest.GameTestHolder;
+import xfacthd.jsontabs.JsonTabs;
+import xfacthd.jsontabs.tabs.*;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.ref.Reference;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Performance regression tests, run headless with the {@code gameTestServer} run config. Each test loads a
+ * generated set of definitions from disk, builds them into a layout through the {@link JsonTabManager} like a
+ * layout received from a server, builds the contents of every tab and measures the retained heap of all of it. The
+ * median of several runs is compared against the budgets in {@code data/jsontabs/perf_budgets.json}. A test fails
+ * if any measurement exceeds a recorded budget by more than the tolerance, budgets which weren't recorded are only
+ * reported.
+ * <p>
+ * The tolerance can be overridden with {@code -Djsontabs.perf.tolerance=<fraction>}. With
+ * {@code -Djsontabs.perf.record=true} the measurements are written to {@code jsontabs/perf/perf_budgets.json} in
+ * the game directory, from where they can be copied to {@code src/gametest/resources} after a deliberate change.
+ * Recorded budgets are marked as such and name the environment they were recorded in.
+ * <p>
+ * The tests intern into their own {@link NbtPool}, the pool of the loaded definitions and its statistics are left
+ * untouched. The tab metrics are reset after every test
+ */
+@GameTestHolder(JsonTabs.MODID)
+public final class TabPerfTests
+{
+    private static final int[] TAB_COUNTS = new int[] { 10, 100, 1000 };
+    private static final int ENTRIES_PER_TAB = 100;
+    private static final double NBT_RATIO = .1;
+    private static final long SEED = 42L;
+    private static final int RUNS = 5;
+    private static final int TIMEOUT_TICKS = 200;
+    private static final String BATCH = "jsontabs_perf";
+    private static final String TEMPLATE = JsonTabs.MODID + ":empty";
+    private static final ResourceLocation BUDGETS = new ResourceLocation(JsonTabs.MODID, "perf_budgets.json");
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+
+    @GameTestGenerator
+    public static Collection<TestFunction> generatePerfTests()
+    {
+        List<TestFunction> tests = new ArrayList<>();
+        for (int tabCount : TAB_COUNTS)
+        {
+            tests.add(new TestFunction(
+                    BATCH,
+                    "tabperftests.tabs_" + tabCount,
+                    TEMPLATE,
+                    TIMEOUT_TICKS,
+                    0L,
+                    true,
+                    helper -> runPerfTest(helper, tabCount)
+            ));
+        }
+        return tests;
+    }
+
+    private static void runPerfTest(GameTestHelper helper, int tabCount)
+    {
+        ServerLevel level = helper.getLevel();
+        JsonObject budgets = readBudgets(level);
+        JsonObject budgetJson = GsonHelper.getAsJsonObject(GsonHelper.getAsJsonObject(budgets, "sets"), Integer.toString(tabCount));
+        Measurement budget = Measurement.fromJson(budgetJson);
+        boolean enforced = GsonHelper.getAsBoolean(budgetJson, "recorded", GsonHelper.getAsBoolean(budgets, "recorded", false));
+        double tolerance = Double.parseDouble(System.getProperty(
+                "jsontabs.perf.tolerance", Double.toString(GsonHelper.getAsDouble(budgets, "tolerance"))
+        ));
+
+        CreativeModeTab.ItemDisplayParameters params = new CreativeModeTab.ItemDisplayParameters(
+                level.enabledFeatures(), true, level.registryAccess()
+        );
+
+        Path directory = null;
+        NbtPool livePool = NbtPool.install(new NbtPool());
+        try
+        {
+            directory = Files.createTempDirectory("jsontabs_perf");
+            SyntheticDefinitions.write(directory, SyntheticDefinitions.generate(
+                    tabCount, ENTRIES_PER_TAB, NBT_RATIO, SEED, itemNames()
+            ));
+
+            // Warm-up run, also fills the item index and the test's NBT pool which are shared by all runs
+            buildLayout(load(directory), params);
+
+            long[] loadNanos = new long[RUNS];
+            long[] rebuildNanos = new long[RUNS];
+            for (int run = 0; run < RUNS; run++)
+            {
+                long start = System.nanoTime();
+                List<TabDefinition> definitions = load(directory);
+                loadNanos[run] = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                try
+                {
+                    buildLayoutContents(definitions, params);
+                    rebuildNanos[run] = System.nanoTime() - start;
+                }
+                finally
+                {
+                    JsonTabManager.restoreLocalLayout();
+                }
+            }
+
+            Measurement measured = new Measurement(
+                    median(loadNanos) / 1_000_000D,
+                    median(rebuildNanos) / 1_000_000D,
+                    measureRetainedBytes(directory, params) / 1024L
+            );
+            JsonTabs.LOGGER.info(
+                    "Performance with {} tabs of {} entries: load {}ms (budget {}ms), rebuild {}ms (budget {}ms), retained {}KiB (budget {}KiB)",
+                    tabCount, ENTRIES_PER_TAB,
+                    String.format("%.2f", measured.loadMs()), budget.loadMs(),
+                    String.format("%.2f", measured.rebuildMs()), budget.rebuildMs(),
+                    measured.retainedKb(), budget.retainedKb()
+            );
+            if (Boolean.getBoolean("jsontabs.perf.record"))
+            {
+                recordMeasurement(tabCount, measured, budgets);
+            }
+
+            List<String> failures = measured.findExceeded(budget, tolerance);
+            if (!failures.isEmpty())
+            {
+                String message = tabCount + " tabs exceed their budget by more than " + Math.round(tolerance * 100D) + "%: " + String.join(", ", failures);
+                if (enforced)
+                {
+                    helper.fail(message);
+                }
+                JsonTabs.LOGGER.warn("{} (budget wasn't recorded and isn't enforced)", message);
+            }
+            if (!enforced)
+            {
+                JsonTabs.LOGGER.warn("Budget for {} tabs wasn't recorded, record it with -Djsontabs.perf.record=true to enforce it", tabCount);
+            }
+            helper.succeed();
+        }
+        catch (IOException e)
+        {
+            throw new GameTestAssertException("Failed to generate or load definitions: " + e.getMessage());
+        }
+        finally
+        {
+            NbtPool.install(livePool);
+            // The metrics recorded by the runs describe the synthetic definitions, not the loaded ones
+            TabMetrics.reset();
+            if (directory != null)
+            {
+                deleteDirectory(directory);
+            }
+        }
+    }
+
+    private static List<TabDefinition> load(Path directory) throws IOException
+    {
+        TabDefinitionLoader.Result result = TabDefinitionLoader.loadDirectory(directory, Map.of());
+        if (result.hasErrors())
+        {
+            throw new GameTestAssertException("Generated definitions failed to load: " + result.errors().get(0));
+        }
+        return result.definitions();
+    }
+
+    /**
+     * Build the given definitions into a layout and build the contents of every tab, the same path a layout received
+     * from a server takes. The local layout is restored afterwards, so that the next run builds all tabs from scratch
+     * instead of reusing the tabs of the previous run
+     */
+    private static void buildLayout(List<TabDefinition> definitions, CreativeModeTab.ItemDisplayParameters params)
+    {
+        try
+        {
+            buildLayoutContents(definitions, params);
+        }
+        finally
+        {
+            JsonTabManager.restoreLocalLayout();
+        }
+    }
+
+    private static void buildLayoutContents(List<TabDefinition> definitions, CreativeModeTab.ItemDisplayParameters params)
+    {
+        List<CreativeModeTab> tabs = JsonTabManager.applyRemoteLayout(definitions);
+        if (tabs == null)
+        {
+            throw new GameTestAssertException("Generated definitions were rejected by the layout build");
+        }
+        for (CreativeModeTab tab : tabs)
+        {
+            tab.buildContents(params);
+        }
+    }
+
+    /**
+     * Measure the heap retained by the loaded definitions, the built layout and the contents of its tabs
+     */
+    private static long measureRetainedBytes(Path directory, CreativeModeTab.ItemDisplayParameters params) throws IOException
+    {
+        long before = usedHeapAfterGc();
+        try
+        {
+            List<TabDefinition> definitions = load(directory);
+            buildLayoutContents(definitions, params);
+            // The layout stays reachable through the manager until the local layout is restored
+            long after = usedHeapAfterGc();
+            Reference.reachabilityFence(definitions);
+            return Math.max(0L, after - before);
+        }
+        finally
+        {
+            JsonTabManager.restoreLocalLayout();
+        }
+    }
+
+    private static long usedHeapAfterGc()
+    {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        // Multiple passes give finalization and reference processing a chance to release everything unreachable
+        for (int i = 0; i < 3; i++)
+        {
+            memory.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    private static List<String> itemNames()
+    {
+        return BuiltInRegistries.ITEM.stream()
+                .filter(item -> item != Items.AIR)
+                .map(item -> BuiltInRegistries.ITEM.getKey(item).toString())
+                .toList();
+    }
+
+    private static long median(long[] values)
+    {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    private static JsonObject readBudgets(ServerLevel level)
+    {
+        Resource resource = level.getServer().getResourceManager().getResource(BUDGETS).orElseThrow(
+                () -> new GameTestAssertException("Performance budgets '" + BUDGETS + "' are missing")
+        );
+        try (Reader reader = resource.openAsReader())
+        {
+            return GsonHelper.parse(reader);
+        }
+        catch (IOException | JsonParseException e)
+        {
+            throw new GameTestAssertException("Failed to read performance budgets: " + e.getMessage());
+        }
+    }
+
+    private static void recordMeasurement(int tabCount, Measurement measured, JsonObject budgets)
+    {
+        Path path = JsonTabManager.TABS_PATH.resolve("perf").resolve(BUDGETS.getPath());
+        try
+        {
+            JsonObject recorded;
+            if (Files.exists(path))
+            {
+                recorded = GsonHelper.parse(Files.readString(path));
+            }
+            else
+            {
+                recorded = new JsonObject();
+                recorded.add("tolerance", budgets.get("tolerance"));
+                recorded.addProperty("recorded", true);
+                recorded.add("environment", describeEnvironment());
+                recorded.add("sets", new JsonObject());
+            }
+            JsonObject set = measured.toJson();
+            set.addProperty("recorded", true);
+            GsonHelper.getAsJsonObject(recorded, "sets").add(Integer.toString(tabCount), set);
+
+            Files.createDirectories(path.getParent());
+            Files.writeString(path, GSON.toJson(recorded));
+        }
+        catch (IOException | JsonParseException e)
+        {
+            JsonTabs.LOGGER.error("Failed to record performance measurements", e);
+        }
+    }
+
+    /**
+     * {@return the properties of the machine the measurements were taken on which affect them the most}
+     */
+    private static JsonObject describeEnvironment()
+    {
+        JsonObject environment = new JsonObject();
+        environment.addProperty("java", System.getProperty("java.vm.name") + " " + System.getProperty("java.version"));
+        environment.addProperty("os", System.getProperty("os.name") + " " + System.getProperty("os.arch"));
+        environment.addProperty("processors", Runtime.getRuntime().availableProcessors());
+        environment.addProperty("max_heap_mb", Runtime.getRuntime().maxMemory() / (1024L * 1024L));
+        return environment;
+    }
+
+    private static void deleteDirectory(Path directory)
+    {
+        try (Stream<Path> paths = Files.walk(directory))
+        {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList())
+            {
+                Files.delete(path);
+            }
+        }
+        catch (IOException e)
+        {
+            JsonTabs.LOGGER.warn("Failed to delete temporary definition directory '{}'", directory, e);
+        }
+    }
+
+
+
+    /**
+     * @param loadMs The time taken to read and decode all definitions
+     * @param rebuildMs The time taken to build the layout and the contents of all tabs
+     * @param retainedKb The heap retained by the definitions and the built contents
+     */
+    private record Measurement(double loadMs, double rebuildMs, long retainedKb)
+    {
+        static Measurement fromJson(JsonObject json)
+        {
+            return new Measurement(
+                    GsonHelper.getAsDouble(json, "load_ms"),
+                    GsonHelper.getAsDouble(json, "rebuild_ms"),
+                    GsonHelper.getAsLong(json, "retained_kb")
+            );
+        }
+
+        JsonObject toJson()
+        {
+            JsonObject json = new JsonObject();
+            json.addProperty("load_ms", Math.ceil(loadMs));
+            json.addProperty("rebuild_ms", Math.ceil(rebuildMs));
+            json.addProperty("retained_kb", retainedKb);
+            return json;
+        }
+
+        List<String> findExceeded(Measurement budget, double tolerance)
+        {
+            double factor = 1D + tolerance;
+            List<String> exceeded = new ArrayList<>();
+            if (loadMs > budget.loadMs * factor)
+            {
+                exceeded.add(String.format("load took %.2fms, budget is %.0fms", loadMs, budget.loadMs));
+            }
+            if (rebuildMs > budget.rebuildMs * factor)
+            {
+                exceeded.add(String.format("rebuild took %.2fms, budget is %.0fms", rebuildMs, budget.rebuildMs));
+            }
+            if (retainedKb > budget.retainedKb * factor)
+            {
+                exceeded.add(String.format("retained %dKiB, budget is %dKiB", retainedKb, budget.retainedKb));
+            }
+            return exceeded;
+        }
+    }
+}
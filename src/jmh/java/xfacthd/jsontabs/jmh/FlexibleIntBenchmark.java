@@ -0,0 +1,35 @@
+package xfacthd.jsontabs.jmh;
+
+import com.google.gson.JsonPrimitive;
+import com.mojang.serialization.JsonOps;
+import org.openjdk.jmh.annotations.*;
+import xfacthd.jsontabs.util.Utils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures decoding colors through {@link Utils#FLEXIBLE_INT_CODEC} from numbers and from hex strings
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FlexibleIntBenchmark
+{
+    private final JsonPrimitive number = new JsonPrimitive(0x404040);
+    private final JsonPrimitive hexString = new JsonPrimitive("0x404040");
+
+    @Benchmark
+    public Integer decodeNumber()
+    {
+        return Utils.FLEXIBLE_INT_CODEC.parse(JsonOps.INSTANCE, number).result().orElseThrow();
+    }
+
+    @Benchmark
+    public Integer decodeHexString()
+    {
+        return Utils.FLEXIBLE_INT_CODEC.parse(JsonOps.INSTANCE, hexString).result().orElseThrow();
+    }
+}
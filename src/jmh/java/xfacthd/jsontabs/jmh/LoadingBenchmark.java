@@ -0,0 +1,105 @@
+package xfacthd.jsontabs.jmh;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.mojang.serialization.JsonOps;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import xfacthd.jsontabs.tabs.TabDefinition;
+import xfacthd.jsontabs.tabs.TabDefinitionReader;
+import xfacthd.jsontabs.test.SyntheticDefinitions;
+import xfacthd.jsontabs.util.Utils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Measures reading and decoding a directory of synthetic tab definitions, comparing the codec path used for
+ * error reporting with the streaming reader used on the fast path
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoadingBenchmark
+{
+    private static final Gson GSON = new Gson();
+
+    @Param({ "10", "100" })
+    public int tabCount;
+    @Param({ "50", "500" })
+    public int entryCount;
+    @Param({ "0.1" })
+    public double nbtRatio;
+
+    private Path directory;
+    private List<Path> files;
+    private byte[][] data;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException
+    {
+        List<String> definitions = SyntheticDefinitions.generate(tabCount, entryCount, nbtRatio, 42L);
+        directory = Files.createTempDirectory("jsontabs_bench");
+        files = SyntheticDefinitions.write(directory, definitions);
+        data = definitions.stream().map(json -> json.getBytes(StandardCharsets.UTF_8)).toArray(byte[][]::new);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException
+    {
+        try (Stream<Path> paths = Files.walk(directory))
+        {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList())
+            {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Benchmark
+    public void readFilesCodec(Blackhole blackhole)
+    {
+        for (Path file : files)
+        {
+            JsonObject json = Utils.readJsonFile(file, GSON);
+            blackhole.consume(TabDefinition.CODEC.parse(JsonOps.INSTANCE, json).getOrThrow(false, msg -> { }));
+        }
+    }
+
+    @Benchmark
+    public void readFilesStreaming(Blackhole blackhole) throws IOException
+    {
+        for (Path file : files)
+        {
+            blackhole.consume(TabDefinitionReader.read(Files.readAllBytes(file)));
+        }
+    }
+
+    @Benchmark
+    public void decodeCodec(Blackhole blackhole)
+    {
+        for (byte[] bytes : data)
+        {
+            JsonObject json = Utils.readJsonBytes(bytes, GSON);
+            blackhole.consume(TabDefinition.CODEC.parse(JsonOps.INSTANCE, json).getOrThrow(false, msg -> { }));
+        }
+    }
+
+    @Benchmark
+    public void decodeStreaming(Blackhole blackhole) throws IOException
+    {
+        for (byte[] bytes : data)
+        {
+            blackhole.consume(TabDefinitionReader.read(bytes));
+        }
+    }
+}
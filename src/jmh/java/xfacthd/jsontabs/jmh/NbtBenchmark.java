@@ -0,0 +1,82 @@
+package xfacthd.jsontabs.jmh;
+
+import com.mojang.brigadier.exceptions.CommandSyntaxException;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.TagParser;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import xfacthd.jsontabs.tabs.NbtPool;
+import xfacthd.jsontabs.test.SyntheticDefinitions;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures attaching NBT to the entries of a tab, comparing parsing every entry's SNBT with interning it in the
+ * {@link NbtPool} and copying the pooled tag.
+ * <p>
+ * Item stacks can't be created without bootstrapping the registries, the benchmark therefore only covers the
+ * tag handling, which dominates the cost of entries with NBT
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NbtBenchmark
+{
+    @Param({ "100", "1000" })
+    public int entryCount;
+
+    private String[] snbt;
+    private NbtPool pool;
+    private int[] indices;
+
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        Random random = new Random(42L);
+        snbt = new String[entryCount];
+        for (int i = 0; i < entryCount; i++)
+        {
+            snbt[i] = SyntheticDefinitions.SNBT_SAMPLES[random.nextInt(SyntheticDefinitions.SNBT_SAMPLES.length)];
+        }
+
+        pool = new NbtPool();
+        indices = new int[entryCount];
+        for (int i = 0; i < entryCount; i++)
+        {
+            indices[i] = pool.intern(snbt[i]);
+        }
+    }
+
+    @Benchmark
+    public void parsePerEntry(Blackhole blackhole) throws CommandSyntaxException
+    {
+        for (String value : snbt)
+        {
+            blackhole.consume(TagParser.parseTag(value));
+        }
+    }
+
+    @Benchmark
+    public void internFresh(Blackhole blackhole)
+    {
+        NbtPool freshPool = new NbtPool();
+        for (String value : snbt)
+        {
+            blackhole.consume(freshPool.intern(value));
+        }
+    }
+
+    @Benchmark
+    public void copyPooled(Blackhole blackhole)
+    {
+        for (int index : indices)
+        {
+            CompoundTag tag = pool.get(index);
+            blackhole.consume(tag.copy());
+        }
+    }
+}
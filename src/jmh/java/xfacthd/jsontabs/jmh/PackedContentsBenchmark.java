@@ -0,0 +1,74 @@
+package xfacthd.jsontabs.jmh;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import xfacthd.jsontabs.tabs.NbtPool;
+import xfacthd.jsontabs.tabs.TabDefinition;
+import xfacthd.jsontabs.tabs.TabDefinitionReader;
+import xfacthd.jsontabs.test.SyntheticDefinitions;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the data layout of resolved tab contents over a set of synthetic definitions: packing every definition's
+ * entries into item IDs and indices into a fresh {@link NbtPool} and unpacking them into stacks, compared with only
+ * unpacking contents packed by an earlier run. The packing is a model, not the mod's generator, see {@link StandIns}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PackedContentsBenchmark
+{
+    @Param({ "10", "100" })
+    public int tabCount;
+    @Param({ "50", "500" })
+    public int entryCount;
+    @Param({ "0.1" })
+    public double nbtRatio;
+
+    private StandIns standIns;
+    private List<TabDefinition> definitions;
+    private StandIns.Resolved[] resolved;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException
+    {
+        // The synthetic definitions pick their entries from four times as many items as each tab has entries
+        standIns = new StandIns(entryCount * 4);
+        List<String> json = SyntheticDefinitions.generate(tabCount, entryCount, nbtRatio, 42L);
+        definitions = new ArrayList<>(json.size());
+        for (String definition : json)
+        {
+            definitions.add(TabDefinitionReader.read(definition.getBytes(StandardCharsets.UTF_8)));
+        }
+
+        NbtPool pool = new NbtPool();
+        resolved = definitions.stream().map(def -> standIns.pack(def, pool)).toArray(StandIns.Resolved[]::new);
+    }
+
+    @Benchmark
+    public void packAndUnpack(Blackhole blackhole)
+    {
+        NbtPool pool = new NbtPool();
+        for (TabDefinition definition : definitions)
+        {
+            standIns.unpack(standIns.pack(definition, pool), blackhole::consume);
+        }
+    }
+
+    @Benchmark
+    public void unpackPacked(Blackhole blackhole)
+    {
+        for (StandIns.Resolved contents : resolved)
+        {
+            standIns.unpack(contents, blackhole::consume);
+        }
+    }
+}
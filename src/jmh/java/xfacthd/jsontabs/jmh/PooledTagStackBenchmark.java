@@ -0,0 +1,72 @@
+package xfacthd.jsontabs.jmh;
+
+import net.minecraft.resources.ResourceLocation;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import xfacthd.jsontabs.tabs.ItemSelector;
+import xfacthd.jsontabs.tabs.NbtPool;
+import xfacthd.jsontabs.tabs.TabEntry;
+import xfacthd.jsontabs.test.SyntheticDefinitions;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of creating a stand-in stack per entry, for entries without NBT and for entries whose tag is
+ * taken from a warm {@link NbtPool} and copied. Only the pool is the mod's code, see {@link StandIns}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PooledTagStackBenchmark
+{
+    private static final ResourceLocation TAB_NAME = new ResourceLocation("bench", "tab");
+
+    @Param({ "100", "1000" })
+    public int entryCount;
+
+    private StandIns standIns;
+    private NbtPool pool;
+    private TabEntry[] plainEntries;
+    private TabEntry[] nbtEntries;
+
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        Random random = new Random(42L);
+        standIns = new StandIns(entryCount);
+        pool = new NbtPool();
+        plainEntries = new TabEntry[entryCount];
+        nbtEntries = new TabEntry[entryCount];
+        for (int i = 0; i < entryCount; i++)
+        {
+            ItemSelector item = ItemSelector.item(new ResourceLocation(SyntheticDefinitions.itemName(i)));
+            String snbt = SyntheticDefinitions.SNBT_SAMPLES[random.nextInt(SyntheticDefinitions.SNBT_SAMPLES.length)];
+            plainEntries[i] = new TabEntry(item, "");
+            nbtEntries[i] = new TabEntry(item, snbt);
+            // Intern up front, tags are parsed once per load and not per stack
+            nbtEntries[i].internTag(pool, TAB_NAME);
+        }
+    }
+
+    @Benchmark
+    public void stackPlain(Blackhole blackhole)
+    {
+        for (TabEntry entry : plainEntries)
+        {
+            blackhole.consume(standIns.makeStack(entry, pool, TAB_NAME));
+        }
+    }
+
+    @Benchmark
+    public void stackWithNbt(Blackhole blackhole)
+    {
+        for (TabEntry entry : nbtEntries)
+        {
+            blackhole.consume(standIns.makeStack(entry, pool, TAB_NAME));
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package xfacthd.jsontabs.jmh;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.resources.ResourceLocation;
+import xfacthd.jsontabs.tabs.NbtPool;
+import xfacthd.jsontabs.tabs.TabDefinition;
+import xfacthd.jsontabs.tabs.TabEntry;
+import xfacthd.jsontabs.test.SyntheticDefinitions;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Stand-ins for the item registry, items and item stacks, which can't be created without bootstrapping the game,
+ * with a simplified model of building stacks and packed contents on top of them. The model is not the mod's code:
+ * the item lookup, tag handling and content generation of the real classes only run in a bootstrapped game, these
+ * benchmarks therefore only measure the cost of the data layout they use. The entries, definitions and
+ * {@link NbtPool} are the real ones.
+ * <p>
+ * Entry conditions, feature flags, tags, patterns and includes aren't modelled
+ */
+final class StandIns
+{
+    static final Stack EMPTY = new Stack(null);
+
+    private final Map<ResourceLocation, Item> byName = new HashMap<>();
+    private final List<Item> byId = new ArrayList<>();
+    private final Object2IntMap<Item> idByItem = new Object2IntOpenHashMap<>();
+
+    /**
+     * @param itemCount The amount of items to register, named like the items of the synthetic definitions
+     */
+    StandIns(int itemCount)
+    {
+        for (int i = 0; i < itemCount; i++)
+        {
+            Item item = new Item(new ResourceLocation(SyntheticDefinitions.itemName(i)));
+            byName.put(item.name(), item);
+            idByItem.put(item, byId.size());
+            byId.add(item);
+        }
+    }
+
+    /**
+     * Look up the item of a single item entry and attach a copy of its pooled tag
+     */
+    Stack makeStack(TabEntry entry, NbtPool pool, ResourceLocation tabName)
+    {
+        Item item = entry.name().isSingleItem() ? byName.get(entry.name().location()) : null;
+        if (item == null)
+        {
+            return EMPTY;
+        }
+
+        Stack stack = new Stack(item);
+        int tagIndex = entry.internTag(pool, tabName);
+        if (tagIndex != NbtPool.NO_TAG)
+        {
+            stack.tag = pool.get(tagIndex).copy();
+        }
+        return stack;
+    }
+
+    /**
+     * Pack the single item entries of a definition into item IDs and tag indices, dropping duplicates
+     */
+    Resolved pack(TabDefinition definition, NbtPool pool)
+    {
+        IntArrayList items = new IntArrayList(definition.contents().size());
+        IntArrayList tags = new IntArrayList(definition.contents().size());
+        LongOpenHashSet seen = new LongOpenHashSet(definition.contents().size());
+        for (TabEntry entry : definition.contents())
+        {
+            Item item = entry.name().isSingleItem() ? byName.get(entry.name().location()) : null;
+            if (item == null)
+            {
+                continue;
+            }
+
+            int tag = entry.internTag(pool, definition.name());
+            int id = idByItem.getInt(item);
+            if (seen.add(((long) id << 32) | (tag & 0xFFFFFFFFL)))
+            {
+                items.add(id);
+                tags.add(tag);
+            }
+        }
+        return new Resolved(items.toIntArray(), tags.toIntArray(), pool);
+    }
+
+    /**
+     * Create one new stack per packed entry with a copy of its pooled tag
+     */
+    void unpack(Resolved resolved, Consumer<Stack> output)
+    {
+        int[] items = resolved.items();
+        int[] tags = resolved.tags();
+        for (int i = 0; i < items.length; i++)
+        {
+            Stack stack = new Stack(byId.get(items[i]));
+            if (tags[i] != NbtPool.NO_TAG)
+            {
+                stack.tag = resolved.pool().get(tags[i]).copy();
+            }
+            output.accept(stack);
+        }
+    }
+
+
+
+    record Item(ResourceLocation name) { }
+
+    record Resolved(int[] items, int[] tags, NbtPool pool) { }
+
+    static final class Stack
+    {
+        final Item item;
+        int count = 1;
+        CompoundTag tag = null;
+
+        Stack(Item item)
+        {
+            this.item = item;
+        }
+    }
+}
@@ -5,23 +5,36 @@ import com.mojang.logging.LogUtils;
 import net.minecraft.network.chat.Component;
 import net.minecraft.resources.ResourceLocation;
 import net.minecraft.server.packs.PackType;
-import net.minecraft.server.packs.PathPackResources;
 import net.minecraft.server.packs.repository.Pack;
 import net.minecraft.server.packs.repository.PackSource;
 import net.minecraft.world.item.CreativeModeTab;
 import net.minecraftforge.common.CreativeModeTabRegistry;
+import net.minecraftforge.common.MinecraftForge;
 import net.minecraftforge.event.AddPackFindersEvent;
+import net.minecraftforge.event.RegisterCommandsEvent;
+import net.minecraftforge.event.TagsUpdatedEvent;
 import net.minecraftforge.event.entity.EntityAttributeCreationEvent;
 import net.minecraftforge.eventbus.api.IEventBus;
+import net.minecraftforge.fml.ModLoadingContext;
 import net.minecraftforge.fml.common.Mod;
+import net.minecraftforge.fml.config.ModConfig;
+import net.minecraftforge.fml.event.config.ModConfigEvent;
 import net.minecraftforge.fml.javafmlmod.FMLJavaModLoadingContext;
+import net.minecraftforge.fml.loading.FMLEnvironment;
 import net.minecraftforge.fml.loading.FileUtils;
 import net.minecraftforge.fml.util.ObfuscationReflectionHelper;
+import net.minecraftforge.registries.IdMappingEvent;
 import org.slf4j.Logger;
+import xfacthd.jsontabs.client.ClientCommands;
+import xfacthd.jsontabs.client.ClientLayoutHandler;
+import xfacthd.jsontabs.client.LazyTabActivator;
+import xfacthd.jsontabs.client.TabFileWatcher;
+import xfacthd.jsontabs.client.TabResourcePack;
+import xfacthd.jsontabs.command.JsonTabsCommand;
+import xfacthd.jsontabs.net.LayoutSync;
+import xfacthd.jsontabs.tabs.ItemIndex;
 import xfacthd.jsontabs.tabs.JsonTabManager;
 
-import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Map;
 import java.util.Objects;
@@ -34,15 +47,41 @@ public final class JsonTabs
 
     public JsonTabs()
     {
+        // Definitions are decoded while the other mods are constructed, only building the tabs needs the registries
+        JsonTabManager.startPreload();
+
+        ModLoadingContext.get().registerConfig(ModConfig.Type.COMMON, JsonTabsConfig.SPEC);
+        LayoutSync.register();
+
         IEventBus bus = FMLJavaModLoadingContext.get().getModEventBus();
         bus.addListener(JsonTabs::onCreateAttributes);
         bus.addListener(JsonTabs::onAddPackFinders);
+        bus.addListener(JsonTabs::onConfigLoading);
+        MinecraftForge.EVENT_BUS.addListener(JsonTabs::onTagsUpdated);
+        MinecraftForge.EVENT_BUS.addListener(JsonTabs::onIdsRemapped);
+        MinecraftForge.EVENT_BUS.addListener(JsonTabs::onRegisterCommands);
+        MinecraftForge.EVENT_BUS.addListener(LayoutSync::onPlayerLoggedOut);
+        if (FMLEnvironment.dist.isClient())
+        {
+            bus.addListener(TabFileWatcher::onClientSetup);
+            MinecraftForge.EVENT_BUS.addListener(ClientCommands::onRegisterClientCommands);
+            MinecraftForge.EVENT_BUS.addListener(LazyTabActivator::onClientTick);
+            MinecraftForge.EVENT_BUS.addListener(ClientLayoutHandler::onLoggingIn);
+            MinecraftForge.EVENT_BUS.addListener(ClientLayoutHandler::onLoggingOut);
+        }
     }
 
     private static void onCreateAttributes(final EntityAttributeCreationEvent event)
     {
         JsonTabManager.load();
+        installTabs();
+    }
 
+    /**
+     * Replace the vanilla tabs and edges known to Forge with the ones currently held by the {@link JsonTabManager}
+     */
+    public static void installTabs()
+    {
         Multimap<ResourceLocation, ResourceLocation> edges = ObfuscationReflectionHelper.getPrivateValue(
                 CreativeModeTabRegistry.class, null, "vanillaEdges"
         );
@@ -60,8 +99,38 @@ public final class JsonTabs
         tabs.putAll(JsonTabManager.getTabs());
     }
 
+    private static void onConfigLoading(final ModConfigEvent.Loading event)
+    {
+        if (event.getConfig().getSpec() == JsonTabsConfig.SPEC && JsonTabManager.onConfigLoaded())
+        {
+            installTabs();
+        }
+    }
+
+    private static void onTagsUpdated(final TagsUpdatedEvent event)
+    {
+        ItemIndex.invalidateTags();
+        // The contents of the precompiled profile can only be resolved once tags are available
+        JsonTabManager.precompileNext();
+    }
+
+    private static void onIdsRemapped(final IdMappingEvent event)
+    {
+        ItemIndex.invalidateIds();
+    }
+
+    private static void onRegisterCommands(final RegisterCommandsEvent event)
+    {
+        JsonTabsCommand.register(event.getDispatcher(), true);
+    }
+
     private static void onAddPackFinders(final AddPackFindersEvent event)
     {
+        if (event.getPackType() != PackType.CLIENT_RESOURCES)
+        {
+            return;
+        }
+
         Path packPath = JsonTabManager.TABS_PATH.resolve("resources");
         try
         {
@@ -69,21 +138,16 @@ public final class JsonTabs
         }
         catch (Throwable t)
         {
+            // The generated resources are still served without the user files
             LOGGER.error("Failed to create tab resource pack directory", t);
-            return;
-        }
-
-        Path metaPath = packPath.resolve("pack.mcmeta");
-        if (!Files.exists(metaPath) && !createPackMetadata(metaPath))
-        {
-            return;
         }
 
+        TabResourcePack resources = TabResourcePack.create(packPath);
         Pack pack = Pack.readMetaAndCreate(
-                "builtin/jsontabs_resources",
+                TabResourcePack.PACK_ID,
                 Component.literal("JsonTabs Resources"),
                 true,
-                path -> new PathPackResources(path, packPath, true),
+                id -> resources.open(),
                 PackType.CLIENT_RESOURCES,
                 Pack.Position.BOTTOM,
                 PackSource.BUILT_IN
@@ -98,28 +162,4 @@ public final class JsonTabs
             LOGGER.error("Pack metadata of builtin resource pack is invalid!");
         }
     }
-
-    private static boolean createPackMetadata(Path metaPath)
-    {
-        try
-        {
-            Files.writeString(metaPath, """
-                    {
-                        "pack": {
-                            "description": "jsontabs builtin resources",
-                            "pack_format": 12,
-                            "forge:resource_pack_format": 12,
-                            "forge:data_pack_format": 10
-                        }
-                    }
-                    """
-            );
-            return true;
-        }
-        catch (IOException e)
-        {
-            LOGGER.error("Failed to create pack metadata, builtin pack won't be loaded. Create pack.mcmeta manually to fix", e);
-            return false;
-        }
-    }
 }
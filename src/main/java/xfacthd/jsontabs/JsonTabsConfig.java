@@ -0,0 +1,52 @@
+package xfacthd.jsontabs;
+
+import net.minecraftforge.common.ForgeConfigSpec;
+
+import java.util.List;
+
+public final class JsonTabsConfig
+{
+    public static final ForgeConfigSpec SPEC;
+    public static final ForgeConfigSpec.BooleanValue SYNC_LAYOUT;
+    public static final ForgeConfigSpec.BooleanValue ACCEPT_SERVER_LAYOUT;
+    public static final ForgeConfigSpec.ConfigValue<List<? extends String>> TOGGLES;
+    public static final ForgeConfigSpec.ConfigValue<String> PROFILE;
+
+    static
+    {
+        ForgeConfigSpec.Builder builder = new ForgeConfigSpec.Builder();
+
+        builder.push("sync");
+        SYNC_LAYOUT = builder
+                .comment(
+                        "If enabled, the server sends its tab layout to connecting clients which use it instead of their local definitions.",
+                        "Later changes to the server's definitions are sent as deltas"
+                )
+                .translation("config.jsontabs.sync_layout")
+                .define("syncLayout", false);
+        ACCEPT_SERVER_LAYOUT = builder
+                .comment("If enabled, the client uses the tab layout sent by servers which have layout sync enabled")
+                .translation("config.jsontabs.accept_server_layout")
+                .define("acceptServerLayout", true);
+        builder.pop();
+
+        builder.push("definitions");
+        TOGGLES = builder
+                .comment(
+                        "The toggles which are enabled for the 'toggles' condition of tab entries.",
+                        "Changes take effect after a restart"
+                )
+                .translation("config.jsontabs.toggles")
+                .defineListAllowEmpty(List.of("toggles"), List::of, toggle -> toggle instanceof String);
+        PROFILE = builder
+                .comment(
+                        "The tab layout profile to use, either 'default' for the definitions in the definitions directory itself",
+                        "or the name of one of its subdirectories. Set by the 'jsontabs profile switch' command"
+                )
+                .translation("config.jsontabs.profile")
+                .define("profile", "default");
+        builder.pop();
+
+        SPEC = builder.build();
+    }
+}
@@ -0,0 +1,51 @@
+package xfacthd.jsontabs.client;
+
+import com.mojang.brigadier.context.CommandContext;
+import net.minecraft.commands.CommandSourceStack;
+import net.minecraft.commands.Commands;
+import net.minecraft.network.chat.Component;
+import net.minecraft.world.item.CreativeModeTab;
+import net.minecraftforge.client.event.RegisterClientCommandsEvent;
+import xfacthd.jsontabs.JsonTabs;
+import xfacthd.jsontabs.command.JsonTabsCommand;
+import xfacthd.jsontabs.net.LayoutSync;
+import xfacthd.jsontabs.tabs.JsonTabManager;
+
+import java.util.List;
+
+/**
+ * Registers the commands on the client as well, the display generator metrics only exist on the client. Switching
+ * profiles is a client command, as it needs to refresh the tabs
+ */
+public final class ClientCommands
+{
+    public static void onRegisterClientCommands(final RegisterClientCommandsEvent event)
+    {
+        JsonTabsCommand.register(event.getDispatcher(), false);
+        event.getDispatcher().register(Commands.literal(JsonTabs.MODID).then(Commands.literal("profile")
+                .then(JsonTabsCommand.profileArgument("switch", ClientCommands::switchProfile))
+        ));
+    }
+
+    private static int switchProfile(CommandContext<CommandSourceStack> ctx)
+    {
+        String name = JsonTabsCommand.getProfileArgument(ctx);
+        List<CreativeModeTab> tabs = JsonTabManager.switchProfile(name);
+        if (tabs == null)
+        {
+            ctx.getSource().sendFailure(Component.literal("Tab layout profile '" + name + "' doesn't exist or is invalid, see the log for errors"));
+            return 0;
+        }
+
+        if (JsonTabManager.isRemoteLayout())
+        {
+            ctx.getSource().sendSuccess(Component.literal("Selected tab layout profile '" + name + "', it takes effect after leaving the server"), false);
+            return 1;
+        }
+
+        TabRefresher.refresh(tabs);
+        LayoutSync.onLocalLayoutChanged();
+        ctx.getSource().sendSuccess(Component.literal("Switched to tab layout profile '" + name + "'"), false);
+        return 1;
+    }
+}
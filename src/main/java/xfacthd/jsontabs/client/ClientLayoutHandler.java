@@ -0,0 +1,157 @@
+package xfacthd.jsontabs.client;
+
+import io.netty.buffer.Unpooled;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.world.item.CreativeModeTab;
+import net.minecraftforge.client.event.ClientPlayerNetworkEvent;
+import xfacthd.jsontabs.JsonTabs;
+import xfacthd.jsontabs.JsonTabsConfig;
+import xfacthd.jsontabs.net.*;
+import xfacthd.jsontabs.tabs.JsonTabManager;
+import xfacthd.jsontabs.tabs.TabDefinition;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Client side of the layout sync, applies layouts received from the server and restores the local layout when
+ * leaving the server
+ */
+public final class ClientLayoutHandler
+{
+    private static List<TabDefinition> remoteLayout = null;
+    private static long remoteHash = LayoutHashPacket.UNKNOWN;
+
+    public static void onLoggingIn(final ClientPlayerNetworkEvent.LoggingIn event)
+    {
+        // Minecraft registers the default search trees after the tabs are first built, they are replaced once it is in-game
+        TabSearchTrees.install();
+        if (JsonTabsConfig.ACCEPT_SERVER_LAYOUT.get() && LayoutSync.isPresent(event.getConnection()))
+        {
+            long hash = LayoutCodec.hash(JsonTabManager.getLocalDefinitions());
+            LayoutSync.CHANNEL.sendToServer(new LayoutHashPacket(hash));
+        }
+    }
+
+    public static void onLoggingOut(final ClientPlayerNetworkEvent.LoggingOut event)
+    {
+        remoteLayout = null;
+        remoteHash = LayoutHashPacket.UNKNOWN;
+        if (JsonTabManager.isRemoteLayout())
+        {
+            TabRefresher.refresh(JsonTabManager.restoreLocalLayout());
+            JsonTabs.LOGGER.info("Restored local tab layout");
+        }
+    }
+
+    public static void handleFullLayout(FullLayoutPacket packet)
+    {
+        if (!JsonTabsConfig.ACCEPT_SERVER_LAYOUT.get())
+        {
+            return;
+        }
+
+        List<TabDefinition> layout = decode(packet.payload(), LayoutCodec::readDefinitions);
+        if (layout != null)
+        {
+            applyLayout(layout, packet.hash(), false);
+        }
+    }
+
+    public static void handleLayoutDelta(LayoutDeltaPacket packet)
+    {
+        if (!JsonTabsConfig.ACCEPT_SERVER_LAYOUT.get())
+        {
+            return;
+        }
+
+        List<TabDefinition> base = remoteLayout != null ? remoteLayout : JsonTabManager.getLocalDefinitions();
+        long baseHash = remoteLayout != null ? remoteHash : LayoutCodec.hash(base);
+        if (baseHash != packet.baseHash())
+        {
+            requestFullLayout("it doesn't match the current layout");
+            return;
+        }
+
+        List<TabDefinition> layout = decode(packet.payload(), buf ->
+        {
+            List<ResourceLocation> order = LayoutCodec.readNames(buf);
+            Map<ResourceLocation, TabDefinition> definitions = new HashMap<>();
+            base.forEach(def -> definitions.put(def.name(), def));
+            LayoutCodec.readDefinitions(buf).forEach(def -> definitions.put(def.name(), def));
+
+            List<TabDefinition> result = new ArrayList<>(order.size());
+            for (ResourceLocation name : order)
+            {
+                TabDefinition def = definitions.get(name);
+                if (def == null)
+                {
+                    throw new IllegalStateException("Delta references unknown tab '" + name + "'");
+                }
+                result.add(def);
+            }
+            return List.copyOf(result);
+        });
+
+        if (layout != null)
+        {
+            applyLayout(layout, packet.hash(), true);
+        }
+    }
+
+    private static void applyLayout(List<TabDefinition> layout, long hash, boolean delta)
+    {
+        if (LayoutCodec.hash(layout) != hash)
+        {
+            if (delta)
+            {
+                requestFullLayout("its hash doesn't match");
+            }
+            else
+            {
+                JsonTabs.LOGGER.error("Hash of tab layout received from the server doesn't match, keeping current layout");
+            }
+            return;
+        }
+
+        List<CreativeModeTab> tabs = JsonTabManager.applyRemoteLayout(layout);
+        if (tabs == null)
+        {
+            JsonTabs.LOGGER.error("Tab layout received from the server can't be sorted, keeping current layout");
+            return;
+        }
+
+        remoteLayout = layout;
+        remoteHash = hash;
+        TabRefresher.refresh(tabs);
+        JsonTabs.LOGGER.info(
+                "Applied {} tab layout {} with {} tabs received from the server",
+                delta ? "delta" : "full", Long.toHexString(hash), layout.size()
+        );
+    }
+
+    private static void requestFullLayout(String reason)
+    {
+        JsonTabs.LOGGER.warn("Can't apply tab layout delta received from the server, {}, requesting full layout", reason);
+        LayoutSync.CHANNEL.sendToServer(new LayoutHashPacket(LayoutHashPacket.UNKNOWN));
+    }
+
+    private static <T> T decode(byte[] payload, Function<FriendlyByteBuf, T> reader)
+    {
+        FriendlyByteBuf buf = new FriendlyByteBuf(Unpooled.wrappedBuffer(payload));
+        try
+        {
+            return reader.apply(buf);
+        }
+        catch (RuntimeException e)
+        {
+            JsonTabs.LOGGER.error("Failed to decode tab layout received from the server", e);
+            return null;
+        }
+        finally
+        {
+            buf.release();
+        }
+    }
+}
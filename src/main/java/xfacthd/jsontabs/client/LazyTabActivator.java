@@ -0,0 +1,90 @@
+package xfacthd.jsontabs.client;
+
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.gui.screens.inventory.CreativeModeInventoryScreen;
+import net.minecraft.world.item.CreativeModeTab;
+import net.minecraftforge.event.TickEvent;
+import xfacthd.jsontabs.JsonTabs;
+import xfacthd.jsontabs.tabs.JsonTabManager;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Activates lazy tabs when they are selected in the creative inventory and all lazy tabs when the search tab
+ * is selected, then builds the contents of the activated tabs
+ */
+public final class LazyTabActivator
+{
+    private static Field selectedTabField = null;
+    private static boolean reflectionFailed = false;
+    private static CreativeModeTab lastSelected = null;
+
+    public static void onClientTick(final TickEvent.ClientTickEvent event)
+    {
+        if (event.phase != TickEvent.Phase.END)
+        {
+            return;
+        }
+
+        if (!(Minecraft.getInstance().screen instanceof CreativeModeInventoryScreen))
+        {
+            lastSelected = null;
+            return;
+        }
+
+        CreativeModeTab selected = getSelectedTab();
+        if (selected == null || selected == lastSelected)
+        {
+            return;
+        }
+        lastSelected = selected;
+
+        List<CreativeModeTab> activated;
+        if (selected.getType() == CreativeModeTab.Type.SEARCH)
+        {
+            activated = JsonTabManager.activateLazyTabs();
+        }
+        else
+        {
+            activated = JsonTabManager.activateLazyTab(selected) ? List.of(selected) : List.of();
+        }
+
+        if (!activated.isEmpty())
+        {
+            TabRefresher.rebuildContents(activated);
+        }
+    }
+
+    private static CreativeModeTab getSelectedTab()
+    {
+        if (reflectionFailed)
+        {
+            return null;
+        }
+
+        try
+        {
+            if (selectedTabField == null)
+            {
+                // The selected tab is the only static tab field of the screen, finding it by type avoids depending on its name
+                selectedTabField = Arrays.stream(CreativeModeInventoryScreen.class.getDeclaredFields())
+                        .filter(field -> Modifier.isStatic(field.getModifiers()))
+                        .filter(field -> field.getType() == CreativeModeTab.class)
+                        .findFirst()
+                        .orElseThrow(() -> new NoSuchFieldException("selectedTab"));
+                selectedTabField.setAccessible(true);
+            }
+            return (CreativeModeTab) selectedTabField.get(null);
+        }
+        catch (ReflectiveOperationException | RuntimeException e)
+        {
+            JsonTabs.LOGGER.error("Failed to find selected creative tab, activating all lazy tabs", e);
+            reflectionFailed = true;
+            TabRefresher.rebuildContents(JsonTabManager.activateLazyTabs());
+            return null;
+        }
+    }
+}
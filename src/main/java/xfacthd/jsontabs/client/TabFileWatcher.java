@@ -0,0 +1,159 @@
+package xfacthd.jsontabs.client;
+
+import net.minecraft.client.Minecraft;
+import net.minecraftforge.fml.event.lifecycle.FMLClientSetupEvent;
+import xfacthd.jsontabs.JsonTabs;
+import xfacthd.jsontabs.net.LayoutSync;
+import xfacthd.jsontabs.tabs.JsonTabManager;
+import xfacthd.jsontabs.tabs.TabDefinitionLoader;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches the definition directory and the directories of all layout profiles and reloads the tabs when definition
+ * files or archives of the active profile are added, changed or removed. Changes to other profiles discard their
+ * compiled layout.
+ * Bursts of events, as produced by editors saving a file, are collapsed into a single reload. Failures while handling
+ * a burst are logged and the watcher keeps running until it's interrupted or its watch service is closed
+ */
+public final class TabFileWatcher
+{
+    private static final long DEBOUNCE_MS = 300;
+
+    public static void onClientSetup(final FMLClientSetupEvent event)
+    {
+        Thread thread = new Thread(TabFileWatcher::run, "JsonTabs Definition Watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static void run()
+    {
+        try (WatchService watcher = JsonTabManager.TABS_PATH.getFileSystem().newWatchService())
+        {
+            for (String profile : JsonTabManager.listProfiles())
+            {
+                register(watcher, JsonTabManager.getProfileDirectory(profile));
+            }
+
+            //noinspection InfiniteLoopStatement
+            while (true)
+            {
+                try
+                {
+                    processChanges(watcher);
+                }
+                catch (ClosedWatchServiceException e)
+                {
+                    return;
+                }
+                catch (RuntimeException e)
+                {
+                    // A broken definition or a failing reload must not end hot reloading for the rest of the session
+                    JsonTabs.LOGGER.error("Failed to process changes to the tab definitions, continuing to watch", e);
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            JsonTabs.LOGGER.error("Failed to watch tab definitions directory, hot reload is not available", e);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Wait for the next burst of events and reload the active profile or discard the other profiles it changed
+     */
+    private static void processChanges(WatchService watcher) throws IOException, InterruptedException
+    {
+        Set<String> changed = new HashSet<>();
+        drainEvents(watcher, watcher.take(), changed);
+
+        WatchKey key;
+        while ((key = watcher.poll(DEBOUNCE_MS, TimeUnit.MILLISECONDS)) != null)
+        {
+            drainEvents(watcher, key, changed);
+        }
+
+        for (String profile : changed)
+        {
+            if (profile.equals(JsonTabManager.getActiveProfile()))
+            {
+                reload();
+            }
+            else
+            {
+                JsonTabManager.discardProfile(profile);
+            }
+        }
+    }
+
+    private static void register(WatchService watcher, Path directory) throws IOException
+    {
+        directory.register(
+                watcher,
+                StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY,
+                StandardWatchEventKinds.ENTRY_DELETE
+        );
+    }
+
+    /**
+     * Collect the profiles with relevant changes from the events of the given key and start watching profile
+     * directories created in the definition directory
+     */
+    private static void drainEvents(WatchService watcher, WatchKey key, Set<String> changed) throws IOException
+    {
+        Path directory = (Path) key.watchable();
+        boolean root = directory.equals(JsonTabManager.TABS_PATH);
+        String profile = root ? JsonTabManager.DEFAULT_PROFILE : directory.getFileName().toString();
+        try
+        {
+            for (WatchEvent<?> event : key.pollEvents())
+            {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW)
+                {
+                    changed.add(profile);
+                }
+                else if (event.context() instanceof Path path && TabDefinitionLoader.isRelevantFile(path))
+                {
+                    changed.add(profile);
+                }
+                else if (root && event.kind() == StandardWatchEventKinds.ENTRY_CREATE && event.context() instanceof Path path &&
+                        JsonTabManager.isProfileName(path.toString()) && Files.isDirectory(directory.resolve(path)))
+                {
+                    register(watcher, directory.resolve(path));
+                }
+            }
+        }
+        finally
+        {
+            // The key only signals again once it's reset, also if handling its events failed
+            key.reset();
+        }
+    }
+
+    private static void reload()
+    {
+        long start = System.nanoTime();
+        JsonTabManager.Reload result = JsonTabManager.prepareReload();
+        if (result == null)
+        {
+            return;
+        }
+
+        Minecraft.getInstance().execute(() ->
+        {
+            TabRefresher.refresh(JsonTabManager.applyReload(result));
+            LayoutSync.onLocalLayoutChanged();
+            JsonTabs.LOGGER.info("Reloaded tab definitions in {}ms", (System.nanoTime() - start) / 1_000_000L);
+        });
+    }
+}
@@ -0,0 +1,85 @@
+package xfacthd.jsontabs.client;
+
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.gui.screens.inventory.CreativeModeInventoryScreen;
+import net.minecraft.world.flag.FeatureFlagSet;
+import net.minecraft.world.item.CreativeModeTab;
+import net.minecraft.world.item.CreativeModeTabs;
+import net.minecraftforge.common.CreativeModeTabRegistry;
+import net.minecraftforge.fml.util.ObfuscationReflectionHelper;
+import xfacthd.jsontabs.JsonTabs;
+
+import java.lang.reflect.Method;
+import java.util.List;
+
+public final class TabRefresher
+{
+    private static Method sortTabsMethod = null;
+
+    /**
+     * Install the current tabs, let Forge sort them again, build the contents of the given tabs and update the
+     * generated tab titles
+     * @param rebuiltTabs The tabs whose contents need to be built, all other tabs keep their contents
+     */
+    public static void refresh(List<CreativeModeTab> rebuiltTabs)
+    {
+        JsonTabs.installTabs();
+        sortTabs();
+        TabSearchTrees.install();
+        rebuildContents(rebuiltTabs);
+        if (TabResourcePack.updateTranslations())
+        {
+            // Only the languages are reloaded, a full resource reload would be far more expensive
+            Minecraft mc = Minecraft.getInstance();
+            mc.getLanguageManager().onResourceManagerReload(mc.getResourceManager());
+        }
+    }
+
+    /**
+     * Build the contents of the given tabs and the search tab with the current display parameters, index the
+     * rebuilt contents for searching and reopen the creative inventory if it is open
+     */
+    public static void rebuildContents(List<CreativeModeTab> tabs)
+    {
+        Minecraft mc = Minecraft.getInstance();
+        if (mc.player == null || mc.level == null)
+        {
+            // Contents will be built when the next world is joined
+            return;
+        }
+
+        FeatureFlagSet features = mc.player.connection.enabledFeatures();
+        boolean hasPermissions = mc.options.operatorItemsTab().get() && mc.player.canUseGameMasterBlocks();
+        CreativeModeTab.ItemDisplayParameters params = new CreativeModeTab.ItemDisplayParameters(
+                features, hasPermissions, mc.level.registryAccess()
+        );
+
+        for (CreativeModeTab tab : tabs)
+        {
+            tab.buildContents(params);
+        }
+        CreativeModeTabs.SEARCH.buildContents(params);
+        TabSearchTrees.populate(tabs);
+
+        if (mc.screen instanceof CreativeModeInventoryScreen)
+        {
+            mc.setScreen(new CreativeModeInventoryScreen(mc.player, features, hasPermissions));
+        }
+    }
+
+    private static void sortTabs()
+    {
+        try
+        {
+            if (sortTabsMethod == null)
+            {
+                sortTabsMethod = ObfuscationReflectionHelper.findMethod(CreativeModeTabRegistry.class, "sortTabs");
+            }
+            sortTabsMethod.invoke(null);
+        }
+        catch (ReflectiveOperationException | RuntimeException e)
+        {
+            JsonTabs.LOGGER.error("Failed to sort reloaded tabs, tab order may be stale until restart", e);
+        }
+    }
+}
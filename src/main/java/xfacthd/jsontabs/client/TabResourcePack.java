@@ -0,0 +1,378 @@
+package xfacthd.jsontabs.client;
+
+import com.google.gson.*;
+import net.minecraft.SharedConstants;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.packs.AbstractPackResources;
+import net.minecraft.server.packs.PackResources;
+import net.minecraft.server.packs.PackType;
+import net.minecraft.server.packs.metadata.MetadataSectionSerializer;
+import net.minecraft.server.packs.resources.IoSupplier;
+import org.jetbrains.annotations.Nullable;
+import xfacthd.jsontabs.JsonTabs;
+import xfacthd.jsontabs.tabs.JsonTabManager;
+import xfacthd.jsontabs.tabs.TabDefinition;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * In-memory resource pack serving the tab title translations generated from the built {@link TabDefinition}s,
+ * overlaid with the user files in {@code jsontabs/resources}. Tabs without a {@code title} get their name in title
+ * case. Generated language files are merged with user language files of the same name, user entries take
+ * precedence.
+ * <p>
+ * The user files are indexed once, opening the pack for a resource reload only checks the modification time of
+ * the indexed directories and walks them again if one of them changed. A single instance is shared by all reloads
+ */
+public final class TabResourcePack implements PackResources
+{
+    public static final String PACK_ID = "builtin/jsontabs_resources";
+    private static final String ASSETS_DIR = "assets";
+    private static final String LANG_PREFIX = "lang/";
+    private static final String LANG_EXTENSION = ".json";
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().disableHtmlEscaping().create();
+
+    private static volatile TabResourcePack instance = null;
+
+    private final Path root;
+    private final byte[] metadata;
+    private volatile FileIndex index;
+    private volatile GeneratedLang lang = new GeneratedLang(null, Map.of());
+
+    private TabResourcePack(Path root)
+    {
+        this.root = root;
+        this.metadata = createMetadata();
+        this.index = FileIndex.build(root);
+    }
+
+    public static TabResourcePack create(Path root)
+    {
+        TabResourcePack pack = new TabResourcePack(root);
+        instance = pack;
+        return pack;
+    }
+
+    /**
+     * Prepare the pack for a resource reload, re-indexing the user files if any of them were added or removed
+     */
+    public TabResourcePack open()
+    {
+        if (index.isStale())
+        {
+            index = FileIndex.build(root);
+        }
+        return this;
+    }
+
+    /**
+     * Generate the translations of the currently built definitions
+     * @return True if the translations changed and the languages need to be reloaded
+     */
+    public static boolean updateTranslations()
+    {
+        TabResourcePack pack = instance;
+        if (pack == null)
+        {
+            return false;
+        }
+
+        Map<ResourceLocation, Map<String, String>> previous = pack.lang.files();
+        return !previous.equals(pack.getLang().files());
+    }
+
+    @Nullable
+    @Override
+    public IoSupplier<InputStream> getRootResource(String... elements)
+    {
+        if (elements.length == 1 && elements[0].equals(PACK_META))
+        {
+            return () -> new ByteArrayInputStream(metadata);
+        }
+
+        Path path = root.resolve(String.join("/", elements));
+        return Files.isRegularFile(path) ? IoSupplier.create(path) : null;
+    }
+
+    @Nullable
+    @Override
+    public IoSupplier<InputStream> getResource(PackType type, ResourceLocation location)
+    {
+        if (type != PackType.CLIENT_RESOURCES)
+        {
+            return null;
+        }
+
+        Path file = index.files().get(location);
+        Map<String, String> translations = getLang().files().get(location);
+        if (translations != null)
+        {
+            return () -> new ByteArrayInputStream(mergeTranslations(translations, file));
+        }
+        return file != null ? IoSupplier.create(file) : null;
+    }
+
+    @Override
+    public void listResources(PackType type, String namespace, String path, ResourceOutput output)
+    {
+        if (type != PackType.CLIENT_RESOURCES)
+        {
+            return;
+        }
+
+        String prefix = path + "/";
+        Set<ResourceLocation> locations = new HashSet<>(index.files().keySet());
+        locations.addAll(getLang().files().keySet());
+        for (ResourceLocation location : locations)
+        {
+            if (location.getNamespace().equals(namespace) && location.getPath().startsWith(prefix))
+            {
+                IoSupplier<InputStream> resource = getResource(type, location);
+                if (resource != null)
+                {
+                    output.accept(location, resource);
+                }
+            }
+        }
+    }
+
+    @Override
+    public Set<String> getNamespaces(PackType type)
+    {
+        if (type != PackType.CLIENT_RESOURCES)
+        {
+            return Set.of();
+        }
+
+        Set<String> namespaces = new HashSet<>(index.namespaces());
+        getLang().files().keySet().forEach(location -> namespaces.add(location.getNamespace()));
+        return namespaces;
+    }
+
+    @Nullable
+    @Override
+    public <T> T getMetadataSection(MetadataSectionSerializer<T> serializer)
+    {
+        return AbstractPackResources.getMetadataFromStream(serializer, new ByteArrayInputStream(metadata));
+    }
+
+    @Override
+    public String packId()
+    {
+        return PACK_ID;
+    }
+
+    @Override
+    public boolean isBuiltin()
+    {
+        return true;
+    }
+
+    @Override
+    public void close() { }
+
+
+
+    private GeneratedLang getLang()
+    {
+        List<TabDefinition> definitions = JsonTabManager.getBuiltDefinitions();
+        GeneratedLang current = lang;
+        if (current.definitions() != definitions)
+        {
+            current = GeneratedLang.generate(definitions);
+            lang = current;
+        }
+        return current;
+    }
+
+    private static byte[] mergeTranslations(Map<String, String> translations, @Nullable Path userFile) throws IOException
+    {
+        Map<String, String> merged = new TreeMap<>(translations);
+        if (userFile != null)
+        {
+            try (Reader reader = Files.newBufferedReader(userFile))
+            {
+                JsonObject userTranslations = GSON.fromJson(reader, JsonObject.class);
+                if (userTranslations != null)
+                {
+                    userTranslations.entrySet().forEach(entry -> merged.put(entry.getKey(), entry.getValue().getAsString()));
+                }
+            }
+            catch (JsonParseException | IllegalStateException | UnsupportedOperationException e)
+            {
+                throw new IOException("Invalid language file '" + userFile + "'", e);
+            }
+        }
+        return GSON.toJson(merged).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] createMetadata()
+    {
+        JsonObject pack = new JsonObject();
+        pack.addProperty("description", "JsonTabs generated resources");
+        pack.addProperty("pack_format", SharedConstants.getCurrentVersion().getPackVersion(PackType.CLIENT_RESOURCES));
+        JsonObject json = new JsonObject();
+        json.add("pack", pack);
+        return GSON.toJson(json).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Turn the last segment of the name's path into a title, e.g. {@code example:tools/power_tools} becomes
+     * {@code Power Tools}
+     */
+    static String prettify(ResourceLocation name)
+    {
+        String path = name.getPath();
+        String segment = path.substring(path.lastIndexOf('/') + 1);
+        StringBuilder title = new StringBuilder(segment.length());
+        for (String word : segment.split("[_.-]+"))
+        {
+            if (word.isEmpty())
+            {
+                continue;
+            }
+            if (!title.isEmpty())
+            {
+                title.append(' ');
+            }
+            title.append(Character.toUpperCase(word.charAt(0))).append(word, 1, word.length());
+        }
+        return title.toString();
+    }
+
+
+
+    /**
+     * @param files The user files by resource location
+     * @param namespaces The namespaces of the user files
+     * @param directories The modification times of all indexed directories at the time of indexing
+     */
+    private record FileIndex(Map<ResourceLocation, Path> files, Set<String> namespaces, Map<Path, FileTime> directories)
+    {
+        static FileIndex build(Path root)
+        {
+            Map<ResourceLocation, Path> files = new HashMap<>();
+            Set<String> namespaces = new HashSet<>();
+            Map<Path, FileTime> directories = new HashMap<>();
+            directories.put(root, modificationTime(root));
+
+            Path assets = root.resolve(ASSETS_DIR);
+            if (Files.isDirectory(assets))
+            {
+                try (Stream<Path> paths = Files.walk(assets))
+                {
+                    paths.forEach(path ->
+                    {
+                        if (Files.isDirectory(path))
+                        {
+                            directories.put(path, modificationTime(path));
+                        }
+                        else
+                        {
+                            indexFile(assets.relativize(path), path, files, namespaces);
+                        }
+                    });
+                }
+                catch (IOException | UncheckedIOException e)
+                {
+                    JsonTabs.LOGGER.error("Failed to index tab resources in '{}'", root, e);
+                }
+            }
+            return new FileIndex(Map.copyOf(files), Set.copyOf(namespaces), Map.copyOf(directories));
+        }
+
+        private static void indexFile(Path relative, Path file, Map<ResourceLocation, Path> files, Set<String> namespaces)
+        {
+            if (relative.getNameCount() < 2)
+            {
+                return;
+            }
+
+            String namespace = relative.getName(0).toString();
+            String path = relative.subpath(1, relative.getNameCount()).toString().replace('\\', '/');
+            if (!ResourceLocation.isValidNamespace(namespace) || !ResourceLocation.isValidPath(path))
+            {
+                JsonTabs.LOGGER.warn("Invalid path '{}' in tab resources, ignoring", relative);
+                return;
+            }
+
+            files.put(new ResourceLocation(namespace, path), file);
+            namespaces.add(namespace);
+        }
+
+        boolean isStale()
+        {
+            for (Map.Entry<Path, FileTime> entry : directories.entrySet())
+            {
+                if (!Objects.equals(modificationTime(entry.getKey()), entry.getValue()))
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static FileTime modificationTime(Path directory)
+        {
+            try
+            {
+                return Files.getLastModifiedTime(directory);
+            }
+            catch (IOException e)
+            {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * @param definitions The definitions the translations were generated from, compared by identity
+     * @param files The translations by language file
+     */
+    private record GeneratedLang(List<TabDefinition> definitions, Map<ResourceLocation, Map<String, String>> files)
+    {
+        static GeneratedLang generate(List<TabDefinition> definitions)
+        {
+            Map<ResourceLocation, Map<String, String>> files = new HashMap<>();
+            for (TabDefinition def : definitions)
+            {
+                if (def.useVanilla())
+                {
+                    continue;
+                }
+
+                Map<String, String> titles = def.titles();
+                String defaultTitle = titles.getOrDefault(TabDefinition.DEFAULT_LANGUAGE, prettify(def.name()));
+                languageFile(files, TabDefinition.DEFAULT_LANGUAGE).put(def.titleKey(), defaultTitle);
+                titles.forEach((language, title) ->
+                {
+                    String code = language.toLowerCase(Locale.ROOT);
+                    if (code.equals(TabDefinition.DEFAULT_LANGUAGE))
+                    {
+                        return;
+                    }
+                    if (!ResourceLocation.isValidPath(code))
+                    {
+                        JsonTabs.LOGGER.warn("Invalid language code '{}' in title of tab definition '{}', ignoring", language, def.name());
+                        return;
+                    }
+                    languageFile(files, code).put(def.titleKey(), title);
+                });
+            }
+
+            files.replaceAll((file, translations) -> Map.copyOf(translations));
+            return new GeneratedLang(definitions, Map.copyOf(files));
+        }
+
+        private static Map<String, String> languageFile(Map<ResourceLocation, Map<String, String>> files, String language)
+        {
+            ResourceLocation location = new ResourceLocation(JsonTabs.MODID, LANG_PREFIX + language + LANG_EXTENSION);
+            return files.computeIfAbsent(location, loc -> new HashMap<>());
+        }
+    }
+}
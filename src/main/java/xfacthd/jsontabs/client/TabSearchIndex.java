@@ -0,0 +1,131 @@
+package xfacthd.jsontabs.client;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.world.item.ItemStack;
+
+import java.util.*;
+
+/**
+ * Immutable substring index over the lowercase display names and registry IDs of the contents of a tab. Every
+ * n-gram of up to {@link #GRAM_LENGTH} characters of each key maps to the sorted positions of the stacks containing
+ * it.
+ * <p>
+ * A query of up to {@link #GRAM_LENGTH} characters is answered directly by its posting list. Longer queries only
+ * verify the stacks in the posting list of their rarest n-gram, so a query costs time in proportion to the
+ * candidates containing that n-gram and not to the size of the tab. Results keep the order of the tab
+ */
+public final class TabSearchIndex
+{
+    static final int GRAM_LENGTH = 3;
+    private static final int[] NO_POSTINGS = new int[0];
+
+    private final List<ItemStack> stacks;
+    private final String[] names;
+    private final String[] ids;
+    private final Long2ObjectMap<int[]> postings;
+
+    private TabSearchIndex(List<ItemStack> stacks, String[] names, String[] ids, Long2ObjectMap<int[]> postings)
+    {
+        this.stacks = stacks;
+        this.names = names;
+        this.ids = ids;
+        this.postings = postings;
+    }
+
+    /**
+     * Build the index of the given stacks, which must not be modified afterwards
+     */
+    public static TabSearchIndex build(List<ItemStack> stacks)
+    {
+        String[] names = new String[stacks.size()];
+        String[] ids = new String[stacks.size()];
+        Long2ObjectMap<IntArrayList> builder = new Long2ObjectOpenHashMap<>();
+        for (int idx = 0; idx < stacks.size(); idx++)
+        {
+            ItemStack stack = stacks.get(idx);
+            names[idx] = stack.getHoverName().getString().toLowerCase(Locale.ROOT);
+            ids[idx] = BuiltInRegistries.ITEM.getKey(stack.getItem()).toString();
+            addGrams(builder, names[idx], idx);
+            addGrams(builder, ids[idx], idx);
+        }
+
+        Long2ObjectMap<int[]> postings = new Long2ObjectOpenHashMap<>(builder.size());
+        builder.long2ObjectEntrySet().forEach(entry -> postings.put(entry.getLongKey(), entry.getValue().toIntArray()));
+        return new TabSearchIndex(List.copyOf(stacks), names, ids, postings);
+    }
+
+    private static void addGrams(Long2ObjectMap<IntArrayList> builder, String key, int idx)
+    {
+        for (int start = 0; start < key.length(); start++)
+        {
+            for (int length = 1; length <= GRAM_LENGTH && start + length <= key.length(); length++)
+            {
+                IntArrayList list = builder.computeIfAbsent(encode(key, start, length), gram -> new IntArrayList());
+                // Stacks are added in order, comparing with the last position adds a gram occurring several times in a stack only once
+                if (list.isEmpty() || list.getInt(list.size() - 1) != idx)
+                {
+                    list.add(idx);
+                }
+            }
+        }
+    }
+
+    /**
+     * {@return the stacks whose display name or registry ID contains the given query, in the order of the tab}
+     */
+    public List<ItemStack> search(String query)
+    {
+        String text = query.trim().toLowerCase(Locale.ROOT);
+        if (text.isEmpty())
+        {
+            return stacks;
+        }
+
+        int length = Math.min(GRAM_LENGTH, text.length());
+        int[] candidates = null;
+        for (int start = 0; start + length <= text.length(); start++)
+        {
+            int[] list = postings.getOrDefault(encode(text, start, length), NO_POSTINGS);
+            if (candidates == null || list.length < candidates.length)
+            {
+                candidates = list;
+            }
+            if (candidates.length == 0)
+            {
+                return List.of();
+            }
+        }
+
+        List<ItemStack> results = new ArrayList<>(candidates.length);
+        boolean exact = text.length() <= GRAM_LENGTH;
+        for (int idx : candidates)
+        {
+            if (exact || names[idx].contains(text) || ids[idx].contains(text))
+            {
+                results.add(stacks.get(idx));
+            }
+        }
+        return results;
+    }
+
+    public int size()
+    {
+        return stacks.size();
+    }
+
+    /**
+     * Pack a gram of up to {@link #GRAM_LENGTH} UTF-16 chars and its length into a single key
+     */
+    private static long encode(String text, int start, int length)
+    {
+        long gram = length;
+        for (int i = 0; i < GRAM_LENGTH; i++)
+        {
+            gram = (gram << 16) | (i < length ? text.charAt(start + i) : 0);
+        }
+        return gram;
+    }
+}
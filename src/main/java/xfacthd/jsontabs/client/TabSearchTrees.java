@@ -0,0 +1,226 @@
+package xfacthd.jsontabs.client;
+
+import net.minecraft.Util;
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.searchtree.RefreshableSearchTree;
+import net.minecraft.client.searchtree.SearchRegistry;
+import net.minecraft.locale.Language;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.world.item.CreativeModeTab;
+import net.minecraft.world.item.ItemStack;
+import net.minecraftforge.client.CreativeModeTabSearchRegistry;
+import xfacthd.jsontabs.JsonTabs;
+import xfacthd.jsontabs.tabs.JsonTabManager;
+import xfacthd.jsontabs.tabs.TabDefinition;
+import xfacthd.jsontabs.tabs.TabMetrics;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Replaces the name search trees of the tabs with a search bar built from definitions by trees backed by a
+ * {@link TabSearchIndex}, which avoids building the tooltips of every stack whenever the contents are built.
+ * The index is built on a background thread when the tree is populated and is reused as long as the contents and
+ * the language don't change. A search issued before the index is done waits for it
+ */
+public final class TabSearchTrees
+{
+    private static final Map<CreativeModeTab, IndexedTreeFactory> FACTORIES = new IdentityHashMap<>();
+    private static Field searchRegistryField = null;
+    private static boolean reflectionFailed = false;
+
+    /**
+     * Register the indexed search trees of the current tabs and index the contents they already have. Tabs which
+     * were kept from the previous layout keep their index. Must be called on the main thread
+     */
+    public static void install()
+    {
+        SearchRegistry registry = getSearchRegistry();
+        if (registry == null)
+        {
+            return;
+        }
+
+        Map<CreativeModeTab, IndexedTreeFactory> previous = new IdentityHashMap<>(FACTORIES);
+        FACTORIES.clear();
+        Map<ResourceLocation, CreativeModeTab> tabs = JsonTabManager.getTabs();
+        for (TabDefinition def : JsonTabManager.getBuiltDefinitions())
+        {
+            CreativeModeTab tab = tabs.get(def.name());
+            if (def.useVanilla() || !def.searchBar() || tab == null)
+            {
+                continue;
+            }
+
+            SearchRegistry.Key<ItemStack> key = CreativeModeTabSearchRegistry.getNameSearchKey(tab);
+            if (key == null)
+            {
+                JsonTabs.LOGGER.debug("Tab '{}' has no search tree, keeping the default search", def.name());
+                continue;
+            }
+
+            IndexedTreeFactory factory = previous.get(tab);
+            if (factory == null)
+            {
+                // Registering replaces the current tree, the contents therefore need to be populated again
+                factory = new IndexedTreeFactory(def.name(), key);
+                registry.register(key, factory);
+                if (!tab.getDisplayItems().isEmpty())
+                {
+                    registry.populate(key, List.copyOf(tab.getDisplayItems()));
+                }
+            }
+            FACTORIES.put(tab, factory);
+        }
+    }
+
+    /**
+     * Index the contents of the given tabs after they were built, tabs whose contents didn't change keep their
+     * index. Must be called on the main thread
+     */
+    public static void populate(List<CreativeModeTab> tabs)
+    {
+        SearchRegistry registry = FACTORIES.isEmpty() ? null : getSearchRegistry();
+        if (registry == null)
+        {
+            return;
+        }
+
+        for (CreativeModeTab tab : tabs)
+        {
+            IndexedTreeFactory factory = FACTORIES.get(tab);
+            if (factory != null)
+            {
+                registry.populate(factory.key, List.copyOf(tab.getDisplayItems()));
+            }
+        }
+    }
+
+    private static SearchRegistry getSearchRegistry()
+    {
+        if (reflectionFailed)
+        {
+            return null;
+        }
+
+        try
+        {
+            if (searchRegistryField == null)
+            {
+                // The search registry is the only field of its type, finding it by type avoids depending on its name
+                searchRegistryField = Arrays.stream(Minecraft.class.getDeclaredFields())
+                        .filter(field -> !Modifier.isStatic(field.getModifiers()))
+                        .filter(field -> field.getType() == SearchRegistry.class)
+                        .findFirst()
+                        .orElseThrow(() -> new NoSuchFieldException("searchRegistry"));
+                searchRegistryField.setAccessible(true);
+            }
+            return (SearchRegistry) searchRegistryField.get(Minecraft.getInstance());
+        }
+        catch (ReflectiveOperationException | RuntimeException e)
+        {
+            JsonTabs.LOGGER.error("Failed to find search registry, tabs use the default search", e);
+            reflectionFailed = true;
+            return null;
+        }
+    }
+
+
+
+    /**
+     * Creates the search tree of a tab whenever its contents are populated, reusing the last tree if the
+     * contents are the same
+     */
+    private static final class IndexedTreeFactory implements SearchRegistry.TreeBuilderSupplier<ItemStack>
+    {
+        private final ResourceLocation tabName;
+        private final SearchRegistry.Key<ItemStack> key;
+        private IndexedSearchTree last = null;
+
+        IndexedTreeFactory(ResourceLocation tabName, SearchRegistry.Key<ItemStack> key)
+        {
+            this.tabName = tabName;
+            this.key = key;
+        }
+
+        @Override
+        public RefreshableSearchTree<ItemStack> apply(List<ItemStack> stacks)
+        {
+            IndexedSearchTree tree = last;
+            if (tree == null || !tree.hasContents(stacks))
+            {
+                tree = new IndexedSearchTree(tabName, stacks);
+                last = tree;
+            }
+            return tree;
+        }
+    }
+
+    private static final class IndexedSearchTree implements RefreshableSearchTree<ItemStack>
+    {
+        private final ResourceLocation tabName;
+        private final List<ItemStack> stacks;
+        private Language language;
+        private CompletableFuture<TabSearchIndex> index;
+
+        IndexedSearchTree(ResourceLocation tabName, List<ItemStack> stacks)
+        {
+            this.tabName = tabName;
+            this.stacks = List.copyOf(stacks);
+            buildIndex();
+        }
+
+        /**
+         * Called after the tree was populated and after a resource reload, only a language change affects the index
+         */
+        @Override
+        public void refresh()
+        {
+            if (language != Language.getInstance())
+            {
+                buildIndex();
+            }
+        }
+
+        @Override
+        public List<ItemStack> search(String query)
+        {
+            return index.join().search(query);
+        }
+
+        boolean hasContents(List<ItemStack> contents)
+        {
+            if (language != Language.getInstance() || contents.size() != stacks.size())
+            {
+                return false;
+            }
+            for (int i = 0; i < contents.size(); i++)
+            {
+                if (!ItemStack.matches(contents.get(i), stacks.get(i)))
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void buildIndex()
+        {
+            language = Language.getInstance();
+            index = CompletableFuture.supplyAsync(() ->
+            {
+                long start = System.nanoTime();
+                TabSearchIndex built = TabSearchIndex.build(stacks);
+                TabMetrics.SEARCH_INDEX.record(System.nanoTime() - start);
+                JsonTabs.LOGGER.debug("Built search index of tab '{}' with {} stacks", tabName, built.size());
+                return built;
+            }, Util.backgroundExecutor()).exceptionally(e ->
+            {
+                JsonTabs.LOGGER.error("Failed to build search index of tab '{}'", tabName, e);
+                return TabSearchIndex.build(List.of());
+            });
+        }
+    }
+}
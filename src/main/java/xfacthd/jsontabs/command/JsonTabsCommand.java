@@ -0,0 +1,228 @@
+package xfacthd.jsontabs.command;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.mojang.brigadier.Command;
+import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.arguments.StringArgumentType;
+import com.mojang.brigadier.builder.LiteralArgumentBuilder;
+import com.mojang.brigadier.context.CommandContext;
+import net.minecraft.commands.CommandSourceStack;
+import net.minecraft.commands.Commands;
+import net.minecraft.commands.SharedSuggestionProvider;
+import net.minecraft.network.chat.Component;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraftforge.fml.loading.FMLEnvironment;
+import xfacthd.jsontabs.JsonTabs;
+import xfacthd.jsontabs.net.LayoutSync;
+import xfacthd.jsontabs.tabs.*;
+import xfacthd.jsontabs.util.Histogram;
+import xfacthd.jsontabs.validate.RegistrySnapshot;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+
+public final class JsonTabsCommand
+{
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+    private static final DateTimeFormatter FILE_NAME_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+    private static final int MAX_LISTED_TABS = 10;
+    private static final String PROFILE_ARGUMENT = "name";
+
+    /**
+     * @param requirePermission Whether the command is restricted to operators, client-side commands are not
+     */
+    public static void register(CommandDispatcher<CommandSourceStack> dispatcher, boolean requirePermission)
+    {
+        LiteralArgumentBuilder<CommandSourceStack> root = Commands.literal(JsonTabs.MODID);
+        if (requirePermission)
+        {
+            root.requires(source -> source.hasPermission(Commands.LEVEL_GAMEMASTERS));
+        }
+
+        root.then(Commands.literal("stats")
+                .executes(JsonTabsCommand::printStats)
+                .then(Commands.literal("export").executes(JsonTabsCommand::exportStats))
+        );
+        root.then(Commands.literal("export_snapshot").executes(JsonTabsCommand::exportSnapshot));
+
+        LiteralArgumentBuilder<CommandSourceStack> profile = Commands.literal("profile");
+        profile.then(Commands.literal("list").executes(JsonTabsCommand::listProfiles));
+        // Clients and integrated servers reload through the file watcher and switch profiles with a client command
+        if (requirePermission && FMLEnvironment.dist.isDedicatedServer())
+        {
+            root.then(Commands.literal("reload").executes(JsonTabsCommand::reload));
+            profile.then(profileArgument("switch", JsonTabsCommand::switchProfile));
+        }
+        root.then(profile);
+        dispatcher.register(root);
+    }
+
+    /**
+     * {@return a literal taking the name of a profile as its argument, executing the given command}
+     */
+    public static LiteralArgumentBuilder<CommandSourceStack> profileArgument(String literal, Command<CommandSourceStack> command)
+    {
+        return Commands.literal(literal).then(Commands.argument(PROFILE_ARGUMENT, StringArgumentType.word())
+                .suggests((ctx, builder) -> SharedSuggestionProvider.suggest(JsonTabManager.listProfiles(), builder))
+                .executes(command)
+        );
+    }
+
+    public static String getProfileArgument(CommandContext<CommandSourceStack> ctx)
+    {
+        return StringArgumentType.getString(ctx, PROFILE_ARGUMENT);
+    }
+
+    private static int reload(CommandContext<CommandSourceStack> ctx)
+    {
+        JsonTabManager.Reload result = JsonTabManager.prepareReload();
+        if (result == null)
+        {
+            ctx.getSource().sendSuccess(Component.literal("Tab definitions are unchanged or invalid, see the log for errors"), false);
+            return 0;
+        }
+
+        JsonTabManager.applyReload(result);
+        JsonTabs.installTabs();
+        LayoutSync.broadcast(ctx.getSource().getServer());
+        int count = result.result().definitions().size();
+        ctx.getSource().sendSuccess(Component.literal("Reloaded " + count + " tab definitions"), true);
+        return count;
+    }
+
+    private static int switchProfile(CommandContext<CommandSourceStack> ctx)
+    {
+        String name = getProfileArgument(ctx);
+        if (JsonTabManager.switchProfile(name) == null)
+        {
+            ctx.getSource().sendFailure(Component.literal("Tab layout profile '" + name + "' doesn't exist or is invalid, see the log for errors"));
+            return 0;
+        }
+
+        JsonTabs.installTabs();
+        LayoutSync.broadcast(ctx.getSource().getServer());
+        ctx.getSource().sendSuccess(Component.literal("Switched to tab layout profile '" + name + "'"), true);
+        return 1;
+    }
+
+    private static int listProfiles(CommandContext<CommandSourceStack> ctx)
+    {
+        List<JsonTabManager.ProfileStatus> profiles = JsonTabManager.getProfileStatus();
+        ctx.getSource().sendSuccess(Component.literal(String.format("Tab layout profiles (%d):", profiles.size())), false);
+        for (JsonTabManager.ProfileStatus profile : profiles)
+        {
+            String state;
+            if (profile.compiled())
+            {
+                state = String.format("%d tabs, compiled, ~%.1f KiB of resolved contents", profile.definitions(), profile.memory() / 1024D);
+            }
+            else if (profile.definitions() > 0)
+            {
+                state = String.format("%d tabs, not compiled", profile.definitions());
+            }
+            else
+            {
+                state = "not loaded";
+            }
+            ctx.getSource().sendSuccess(Component.literal(String.format(
+                    " - %s%s: %s", profile.name(), profile.active() ? " (active)" : "", state
+            )), false);
+        }
+        return profiles.size();
+    }
+
+    private static int printStats(CommandContext<CommandSourceStack> ctx)
+    {
+        CommandSourceStack source = ctx.getSource();
+        source.sendSuccess(Component.literal(String.format(
+                "Last load: %.2fms", TabMetrics.getLastLoadNanos() / 1_000_000D
+        )), false);
+        sendHistogram(source, "File read", TabMetrics.FILE_READ);
+        sendHistogram(source, "Decode", TabMetrics.DECODE);
+        sendHistogram(source, "Tab build", TabMetrics.TAB_BUILD);
+        sendHistogram(source, "NBT parse", TabMetrics.NBT_PARSE);
+        sendHistogram(source, "Search index", TabMetrics.SEARCH_INDEX);
+        source.sendSuccess(Component.literal(String.format(
+                "Generator cache: %d hits, %d misses",
+                CachingDisplayGenerator.getTotalHits(),
+                CachingDisplayGenerator.getTotalMisses()
+        )), false);
+        NbtPool.Stats nbtStats = NbtPool.get().getStats();
+        source.sendSuccess(Component.literal(String.format(
+                "NBT pool: %d distinct tags from %d strings, %.1f%% hit rate over %d lookups, ~%d bytes saved, %d invalid",
+                nbtStats.distinctTags(),
+                nbtStats.distinctSnbt(),
+                nbtStats.hitRate() * 100D,
+                nbtStats.lookups(),
+                nbtStats.bytesSaved(),
+                nbtStats.invalid()
+        )), false);
+
+        List<Map.Entry<ResourceLocation, TabMetrics.GeneratorMetrics>> generators = TabMetrics.getGenerators();
+        source.sendSuccess(Component.literal(String.format(
+                "Generators (%d tabs, slowest first):", generators.size()
+        )), false);
+        for (Map.Entry<ResourceLocation, TabMetrics.GeneratorMetrics> entry : generators.subList(0, Math.min(generators.size(), MAX_LISTED_TABS)))
+        {
+            TabMetrics.GeneratorMetrics metrics = entry.getValue();
+            source.sendSuccess(Component.literal(String.format(
+                    " - %s: %s, %d stacks", entry.getKey(), metrics.duration().summary(), metrics.emitted().sum()
+            )), false);
+        }
+        return generators.size();
+    }
+
+    private static void sendHistogram(CommandSourceStack source, String label, Histogram histogram)
+    {
+        source.sendSuccess(Component.literal(label + ": " + histogram.summary()), false);
+    }
+
+    private static int exportStats(CommandContext<CommandSourceStack> ctx)
+    {
+        Path path = JsonTabManager.TABS_PATH.resolve("stats").resolve(
+                "stats-" + LocalDateTime.now().format(FILE_NAME_FORMAT) + ".json"
+        );
+        try
+        {
+            Files.createDirectories(path.getParent());
+            Files.writeString(path, GSON.toJson(TabMetrics.toJson()));
+        }
+        catch (IOException e)
+        {
+            JsonTabs.LOGGER.error("Failed to export tab metrics", e);
+            ctx.getSource().sendFailure(Component.literal("Failed to export tab metrics: " + e.getMessage()));
+            return 0;
+        }
+
+        ctx.getSource().sendSuccess(Component.literal("Exported tab metrics to " + path.toAbsolutePath().normalize()), false);
+        return 1;
+    }
+
+    private static int exportSnapshot(CommandContext<CommandSourceStack> ctx)
+    {
+        Path path = JsonTabManager.TABS_PATH.resolve("validator").resolve(RegistrySnapshot.FILE_NAME);
+        RegistrySnapshot snapshot = RegistrySnapshot.capture();
+        try
+        {
+            snapshot.write(path);
+        }
+        catch (IOException e)
+        {
+            JsonTabs.LOGGER.error("Failed to export registry snapshot", e);
+            ctx.getSource().sendFailure(Component.literal("Failed to export registry snapshot: " + e.getMessage()));
+            return 0;
+        }
+
+        ctx.getSource().sendSuccess(Component.literal(String.format(
+                "Exported %d items, %d item tags and %d tabs to %s",
+                snapshot.items().size(), snapshot.tags().size(), snapshot.tabs().size(), path.toAbsolutePath().normalize()
+        )), false);
+        return 1;
+    }
+}
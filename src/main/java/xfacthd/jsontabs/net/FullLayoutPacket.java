@@ -0,0 +1,33 @@
+package xfacthd.jsontabs.net;
+
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.fml.DistExecutor;
+import net.minecraftforge.network.NetworkEvent;
+import xfacthd.jsontabs.client.ClientLayoutHandler;
+
+import java.util.function.Supplier;
+
+/**
+ * Sent by the server to replace the client's layout
+ * @param hash The hash of the layout
+ * @param payload The layout encoded by {@link LayoutCodec#writeDefinitions}, kept encoded until it is applied
+ */
+public record FullLayoutPacket(long hash, byte[] payload)
+{
+    public void encode(FriendlyByteBuf buf)
+    {
+        buf.writeLong(hash);
+        buf.writeByteArray(payload);
+    }
+
+    public static FullLayoutPacket decode(FriendlyByteBuf buf)
+    {
+        return new FullLayoutPacket(buf.readLong(), buf.readByteArray());
+    }
+
+    public void handle(Supplier<NetworkEvent.Context> ctx)
+    {
+        DistExecutor.unsafeRunWhenOn(Dist.CLIENT, () -> () -> ClientLayoutHandler.handleFullLayout(this));
+    }
+}
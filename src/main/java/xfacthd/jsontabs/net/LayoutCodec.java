@@ -0,0 +1,298 @@
+package xfacthd.jsontabs.net;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.world.item.Item;
+import net.minecraftforge.registries.ForgeRegistries;
+import xfacthd.jsontabs.tabs.*;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * Compact binary encoding of a set of {@link TabDefinition}s for the network. Lengths and counts are varints, single
+ * items are written as their raw registry ID, which matches between server and client after the registry sync, and
+ * all SNBT strings are written once to a table which the entries reference by index. Boolean options share a
+ * single varint
+ */
+public final class LayoutCodec
+{
+    private static final int ITEM_BY_NAME = 0;
+
+    /**
+     * Write the given definitions together with the SNBT table they reference
+     * @param rawIds Whether single items are written as raw IDs, false produces an encoding independent of the
+     *               registry state, which is used for hashing
+     */
+    public static void writeDefinitions(FriendlyByteBuf buf, List<TabDefinition> definitions, boolean rawIds)
+    {
+        List<String> nbtTable = new ArrayList<>();
+        Object2IntMap<String> nbtIndices = new Object2IntOpenHashMap<>();
+        for (TabDefinition def : definitions)
+        {
+            collectNbt(def.icon(), nbtTable, nbtIndices);
+            def.contents().forEach(entry -> collectNbt(entry, nbtTable, nbtIndices));
+        }
+
+        buf.writeCollection(nbtTable, LayoutCodec::writeString);
+        buf.writeCollection(definitions, (buffer, def) -> writeDefinition(buffer, def, nbtIndices, rawIds));
+    }
+
+    public static List<TabDefinition> readDefinitions(FriendlyByteBuf buf)
+    {
+        List<String> nbtTable = buf.readList(LayoutCodec::readString);
+        return List.copyOf(buf.readList(buffer -> readDefinition(buffer, nbtTable)));
+    }
+
+    public static void writeNames(FriendlyByteBuf buf, List<ResourceLocation> names)
+    {
+        buf.writeCollection(names, FriendlyByteBuf::writeResourceLocation);
+    }
+
+    public static List<ResourceLocation> readNames(FriendlyByteBuf buf)
+    {
+        return List.copyOf(buf.readList(FriendlyByteBuf::readResourceLocation));
+    }
+
+    /**
+     * {@return a hash of the given layout which is independent of the registry state and identical on every side}
+     */
+    public static long hash(List<TabDefinition> definitions)
+    {
+        FriendlyByteBuf buf = new FriendlyByteBuf(Unpooled.buffer());
+        try
+        {
+            writeDefinitions(buf, definitions, false);
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(buf.nioBuffer());
+            byte[] hash = digest.digest();
+
+            long result = 0L;
+            for (int i = 0; i < Long.BYTES; i++)
+            {
+                result = (result << 8) | (hash[i] & 0xFF);
+            }
+            return result;
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        finally
+        {
+            buf.release();
+        }
+    }
+
+    /**
+     * {@return the readable bytes of the given buffer}
+     */
+    public static byte[] toBytes(ByteBuf buf)
+    {
+        byte[] bytes = new byte[buf.readableBytes()];
+        buf.getBytes(buf.readerIndex(), bytes);
+        return bytes;
+    }
+
+
+
+    private static void writeDefinition(FriendlyByteBuf buf, TabDefinition def, Object2IntMap<String> nbtIndices, boolean rawIds)
+    {
+        buf.writeResourceLocation(def.name());
+        buf.writeVarInt(
+                packFlag(def.useVanillaOpt(), 0) |
+                packFlag(def.noTitleOpt(), 2) |
+                packFlag(def.noScrollOpt(), 4) |
+                packFlag(def.searchBarOpt(), 6) |
+                packFlag(def.catchAllOpt(), 8) |
+                packFlag(def.lazyOpt(), 10)
+        );
+        writeNames(buf, def.after());
+        writeNames(buf, def.before());
+        writeEntry(buf, def.icon(), nbtIndices, rawIds);
+        buf.writeOptional(def.backgroundOpt(), FriendlyByteBuf::writeResourceLocation);
+        buf.writeOptional(def.labelColorOpt(), FriendlyByteBuf::writeInt);
+        buf.writeOptional(def.searchBarWidthOpt(), FriendlyByteBuf::writeVarInt);
+        buf.writeOptional(def.slotColorOpt(), FriendlyByteBuf::writeInt);
+        buf.writeOptional(def.tabImageOpt(), FriendlyByteBuf::writeResourceLocation);
+        buf.writeCollection(def.contents(), (buffer, entry) -> writeEntry(buffer, entry, nbtIndices, rawIds));
+        buf.writeOptional(def.catchAllOrderOpt(), FriendlyByteBuf::writeEnum);
+        // Sorted to keep the encoding and therefore the hash independent of the map's iteration order
+        buf.writeOptional(def.titleOpt(), (buffer, titles) -> buffer.writeMap(
+                new TreeMap<>(titles), FriendlyByteBuf::writeUtf, FriendlyByteBuf::writeUtf
+        ));
+        buf.writeOptional(def.includeOpt(), (buffer, includes) -> buffer.writeCollection(includes, (incBuf, include) ->
+        {
+            incBuf.writeResourceLocation(include.tab());
+            incBuf.writeCollection(include.exclude(), LayoutCodec::writeSelector);
+        }));
+    }
+
+    private static TabDefinition readDefinition(FriendlyByteBuf buf, List<String> nbtTable)
+    {
+        ResourceLocation name = buf.readResourceLocation();
+        int flags = buf.readVarInt();
+        List<ResourceLocation> after = readNames(buf);
+        List<ResourceLocation> before = readNames(buf);
+        TabEntry icon = readEntry(buf, nbtTable);
+        Optional<ResourceLocation> background = buf.readOptional(FriendlyByteBuf::readResourceLocation);
+        Optional<Integer> labelColor = buf.readOptional(FriendlyByteBuf::readInt);
+        Optional<Integer> searchBarWidth = buf.readOptional(FriendlyByteBuf::readVarInt);
+        Optional<Integer> slotColor = buf.readOptional(FriendlyByteBuf::readInt);
+        Optional<ResourceLocation> tabImage = buf.readOptional(FriendlyByteBuf::readResourceLocation);
+        List<TabEntry> contents = List.copyOf(buf.readList(buffer -> readEntry(buffer, nbtTable)));
+        Optional<CatchAllOrder> catchAllOrder = buf.readOptional(buffer -> buffer.readEnum(CatchAllOrder.class));
+        Optional<Map<String, String>> title = buf.readOptional(buffer -> Map.copyOf(
+                buffer.readMap(FriendlyByteBuf::readUtf, FriendlyByteBuf::readUtf)
+        ));
+        Optional<List<TabInclude>> include = buf.readOptional(buffer -> List.copyOf(buffer.readList(incBuf -> new TabInclude(
+                incBuf.readResourceLocation(),
+                List.copyOf(incBuf.readList(LayoutCodec::readSelector))
+        ))));
+
+        return new TabDefinition(
+                name,
+                unpackFlag(flags, 0),
+                after,
+                before,
+                icon,
+                unpackFlag(flags, 2),
+                unpackFlag(flags, 4),
+                background,
+                labelColor,
+                unpackFlag(flags, 6),
+                searchBarWidth,
+                slotColor,
+                tabImage,
+                contents,
+                unpackFlag(flags, 8),
+                catchAllOrder,
+                unpackFlag(flags, 10),
+                title,
+                include
+        );
+    }
+
+    private static void writeEntry(FriendlyByteBuf buf, TabEntry entry, Object2IntMap<String> nbtIndices, boolean rawIds)
+    {
+        ItemSelector selector = entry.name();
+        buf.writeByte(selector.type().ordinal());
+
+        Item item = rawIds && selector.isSingleItem() ? ForgeRegistries.ITEMS.getValue(selector.location()) : null;
+        if (selector.isSingleItem())
+        {
+            // Raw IDs are shifted by one to reserve 0 for items written by name, i.e. unknown items
+            boolean known = item != null && ForgeRegistries.ITEMS.containsKey(selector.location());
+            buf.writeVarInt(known ? BuiltInRegistries.ITEM.getId(item) + 1 : ITEM_BY_NAME);
+            if (!known)
+            {
+                buf.writeUtf(selector.namespace());
+                buf.writeUtf(selector.path());
+            }
+        }
+        else
+        {
+            buf.writeNullable(selector.namespace(), FriendlyByteBuf::writeUtf);
+            buf.writeUtf(selector.path());
+        }
+
+        buf.writeVarInt(entry.nbt().isEmpty() ? 0 : nbtIndices.getInt(entry.nbt()) + 1);
+
+        // Conditions are rare, a single flag keeps unconditional entries at their previous size
+        buf.writeBoolean(!entry.conditions().isEmpty());
+        if (!entry.conditions().isEmpty())
+        {
+            buf.writeCollection(entry.conditions().mods(), FriendlyByteBuf::writeUtf);
+            buf.writeCollection(entry.conditions().features(), FriendlyByteBuf::writeResourceLocation);
+            buf.writeCollection(entry.conditions().toggles(), FriendlyByteBuf::writeUtf);
+        }
+    }
+
+    private static TabEntry readEntry(FriendlyByteBuf buf, List<String> nbtTable)
+    {
+        ItemSelector.Type type = ItemSelector.Type.values()[buf.readByte()];
+
+        ItemSelector selector;
+        if (type == ItemSelector.Type.ITEM)
+        {
+            int id = buf.readVarInt();
+            if (id != ITEM_BY_NAME)
+            {
+                selector = ItemSelector.item(BuiltInRegistries.ITEM.getKey(BuiltInRegistries.ITEM.byId(id - 1)));
+            }
+            else
+            {
+                selector = new ItemSelector(type, buf.readUtf(), buf.readUtf());
+            }
+        }
+        else
+        {
+            selector = new ItemSelector(type, buf.readNullable(FriendlyByteBuf::readUtf), buf.readUtf());
+        }
+
+        int nbtIndex = buf.readVarInt();
+        EntryConditions conditions = EntryConditions.NONE;
+        if (buf.readBoolean())
+        {
+            conditions = new EntryConditions(
+                    List.copyOf(buf.readList(FriendlyByteBuf::readUtf)),
+                    List.copyOf(buf.readList(FriendlyByteBuf::readResourceLocation)),
+                    List.copyOf(buf.readList(FriendlyByteBuf::readUtf))
+            );
+        }
+        return new TabEntry(selector, nbtIndex == 0 ? "" : nbtTable.get(nbtIndex - 1), conditions);
+    }
+
+    /**
+     * Exclusions are always written by name, unlike entries their items aren't mapped to raw IDs
+     */
+    private static void writeSelector(FriendlyByteBuf buf, ItemSelector selector)
+    {
+        buf.writeByte(selector.type().ordinal());
+        buf.writeNullable(selector.namespace(), FriendlyByteBuf::writeUtf);
+        buf.writeUtf(selector.path());
+    }
+
+    private static ItemSelector readSelector(FriendlyByteBuf buf)
+    {
+        return new ItemSelector(ItemSelector.Type.values()[buf.readByte()], buf.readNullable(FriendlyByteBuf::readUtf), buf.readUtf());
+    }
+
+    private static void collectNbt(TabEntry entry, List<String> nbtTable, Object2IntMap<String> nbtIndices)
+    {
+        if (!entry.nbt().isEmpty() && !nbtIndices.containsKey(entry.nbt()))
+        {
+            nbtIndices.put(entry.nbt(), nbtTable.size());
+            nbtTable.add(entry.nbt());
+        }
+    }
+
+    private static int packFlag(Optional<Boolean> value, int shift)
+    {
+        return value.map(flag -> flag ? 0b11 : 0b01).orElse(0) << shift;
+    }
+
+    private static Optional<Boolean> unpackFlag(int flags, int shift)
+    {
+        int bits = (flags >> shift) & 0b11;
+        return bits == 0 ? Optional.empty() : Optional.of(bits == 0b11);
+    }
+
+    private static void writeString(FriendlyByteBuf buf, String value)
+    {
+        // FriendlyByteBuf#writeUtf() is limited to 32k characters which large SNBT strings may exceed
+        buf.writeByteArray(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String readString(FriendlyByteBuf buf)
+    {
+        return new String(buf.readByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,37 @@
+package xfacthd.jsontabs.net;
+
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.fml.DistExecutor;
+import net.minecraftforge.network.NetworkEvent;
+import xfacthd.jsontabs.client.ClientLayoutHandler;
+
+import java.util.function.Supplier;
+
+/**
+ * Sent by the server to update a client whose layout is known to the server. The payload contains the names
+ * of all tabs of the new layout in order, followed by the definitions which are new or differ from the base
+ * layout, encoded by {@link LayoutCodec#writeDefinitions}
+ * @param baseHash The hash of the layout the delta applies to
+ * @param hash The hash of the layout resulting from the delta
+ * @param payload The encoded delta
+ */
+public record LayoutDeltaPacket(long baseHash, long hash, byte[] payload)
+{
+    public void encode(FriendlyByteBuf buf)
+    {
+        buf.writeLong(baseHash);
+        buf.writeLong(hash);
+        buf.writeByteArray(payload);
+    }
+
+    public static LayoutDeltaPacket decode(FriendlyByteBuf buf)
+    {
+        return new LayoutDeltaPacket(buf.readLong(), buf.readLong(), buf.readByteArray());
+    }
+
+    public void handle(Supplier<NetworkEvent.Context> ctx)
+    {
+        DistExecutor.unsafeRunWhenOn(Dist.CLIENT, () -> () -> ClientLayoutHandler.handleLayoutDelta(this));
+    }
+}
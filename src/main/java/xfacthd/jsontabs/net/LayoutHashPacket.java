@@ -0,0 +1,36 @@
+package xfacthd.jsontabs.net;
+
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraftforge.network.NetworkEvent;
+
+import java.util.function.Supplier;
+
+/**
+ * Sent by the client on login and when it can't apply a delta, tells the server the hash of the layout the
+ * client currently uses
+ * @param hash The hash of the client's layout, {@link #UNKNOWN} to request the full layout
+ */
+public record LayoutHashPacket(long hash)
+{
+    public static final long UNKNOWN = 0L;
+
+    public void encode(FriendlyByteBuf buf)
+    {
+        buf.writeLong(hash);
+    }
+
+    public static LayoutHashPacket decode(FriendlyByteBuf buf)
+    {
+        return new LayoutHashPacket(buf.readLong());
+    }
+
+    public void handle(Supplier<NetworkEvent.Context> ctx)
+    {
+        ServerPlayer player = ctx.get().getSender();
+        if (player != null)
+        {
+            LayoutSync.onClientHash(player, hash);
+        }
+    }
+}
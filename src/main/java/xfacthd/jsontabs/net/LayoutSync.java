@@ -0,0 +1,196 @@
+package xfacthd.jsontabs.net;
+
+import io.netty.buffer.Unpooled;
+import net.minecraft.network.Connection;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraftforge.event.entity.player.PlayerEvent;
+import net.minecraftforge.network.*;
+import net.minecraftforge.network.simple.SimpleChannel;
+import net.minecraftforge.server.ServerLifecycleHooks;
+import xfacthd.jsontabs.JsonTabs;
+import xfacthd.jsontabs.JsonTabsConfig;
+import xfacthd.jsontabs.tabs.JsonTabManager;
+import xfacthd.jsontabs.tabs.TabDefinition;
+
+import java.util.*;
+
+/**
+ * Server side of the layout sync. Clients announce the hash of their layout on login, the server replies with
+ * nothing if the hashes match, with a delta if it knows the client's layout from an earlier snapshot of its own
+ * and with the full layout otherwise. When the server's definitions change, every synced client receives a delta
+ * from the layout it was last sent.
+ * <p>
+ * All state is confined to the server thread
+ */
+public final class LayoutSync
+{
+    private static final String PROTOCOL_VERSION = "3";
+    public static final SimpleChannel CHANNEL = NetworkRegistry.newSimpleChannel(
+            new ResourceLocation(JsonTabs.MODID, "layout"),
+            () -> PROTOCOL_VERSION,
+            NetworkRegistry.acceptMissingOr(PROTOCOL_VERSION),
+            NetworkRegistry.acceptMissingOr(PROTOCOL_VERSION)
+    );
+    // Vanilla limit of clientbound custom payloads
+    private static final int MAX_PAYLOAD_SIZE = 1048576 - 64;
+    private static final int MAX_SNAPSHOTS = 8;
+
+    private static final Map<Long, List<TabDefinition>> SNAPSHOTS = new LinkedHashMap<>(MAX_SNAPSHOTS, .75F, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, List<TabDefinition>> eldest)
+        {
+            return size() > MAX_SNAPSHOTS;
+        }
+    };
+    private static final Map<UUID, Long> KNOWN_HASHES = new HashMap<>();
+    private static List<TabDefinition> currentLayout = null;
+    private static long currentHash = 0L;
+
+    public static void register()
+    {
+        int id = 0;
+        CHANNEL.messageBuilder(LayoutHashPacket.class, id++, NetworkDirection.PLAY_TO_SERVER)
+                .encoder(LayoutHashPacket::encode)
+                .decoder(LayoutHashPacket::decode)
+                .consumerMainThread(LayoutHashPacket::handle)
+                .add();
+        CHANNEL.messageBuilder(FullLayoutPacket.class, id++, NetworkDirection.PLAY_TO_CLIENT)
+                .encoder(FullLayoutPacket::encode)
+                .decoder(FullLayoutPacket::decode)
+                .consumerMainThread(FullLayoutPacket::handle)
+                .add();
+        CHANNEL.messageBuilder(LayoutDeltaPacket.class, id, NetworkDirection.PLAY_TO_CLIENT)
+                .encoder(LayoutDeltaPacket::encode)
+                .decoder(LayoutDeltaPacket::decode)
+                .consumerMainThread(LayoutDeltaPacket::handle)
+                .add();
+    }
+
+    /**
+     * {@return whether the other side of the given connection can receive layout packets}
+     */
+    public static boolean isPresent(Connection connection)
+    {
+        return CHANNEL.isRemotePresent(connection);
+    }
+
+    public static void onPlayerLoggedOut(final PlayerEvent.PlayerLoggedOutEvent event)
+    {
+        KNOWN_HASHES.remove(event.getEntity().getUUID());
+    }
+
+    /**
+     * Notify the server that the local definitions changed, may be called from any thread
+     */
+    public static void onLocalLayoutChanged()
+    {
+        MinecraftServer server = ServerLifecycleHooks.getCurrentServer();
+        if (server != null)
+        {
+            server.execute(() -> broadcast(server));
+        }
+    }
+
+    /**
+     * Send the current layout to all clients which were synced before and whose layout differs
+     */
+    public static void broadcast(MinecraftServer server)
+    {
+        if (!JsonTabsConfig.SYNC_LAYOUT.get())
+        {
+            return;
+        }
+
+        for (ServerPlayer player : server.getPlayerList().getPlayers())
+        {
+            Long knownHash = KNOWN_HASHES.get(player.getUUID());
+            if (knownHash != null)
+            {
+                sendLayout(player, knownHash);
+            }
+        }
+    }
+
+    static void onClientHash(ServerPlayer player, long hash)
+    {
+        if (JsonTabsConfig.SYNC_LAYOUT.get())
+        {
+            sendLayout(player, hash);
+        }
+    }
+
+    private static void sendLayout(ServerPlayer player, long clientHash)
+    {
+        updateSnapshot();
+        KNOWN_HASHES.put(player.getUUID(), currentHash);
+
+        // The owner of an integrated server uses the same definitions as the server itself
+        if (clientHash == currentHash || player.server.isSingleplayerOwner(player.getGameProfile()))
+        {
+            return;
+        }
+
+        List<TabDefinition> base = clientHash != LayoutHashPacket.UNKNOWN ? SNAPSHOTS.get(clientHash) : null;
+        FriendlyByteBuf buf = new FriendlyByteBuf(Unpooled.buffer());
+        try
+        {
+            Object packet;
+            if (base != null)
+            {
+                writeDelta(buf, base, currentLayout);
+                packet = new LayoutDeltaPacket(clientHash, currentHash, LayoutCodec.toBytes(buf));
+            }
+            else
+            {
+                LayoutCodec.writeDefinitions(buf, currentLayout, true);
+                packet = new FullLayoutPacket(currentHash, LayoutCodec.toBytes(buf));
+            }
+
+            int size = buf.readableBytes();
+            if (size > MAX_PAYLOAD_SIZE)
+            {
+                JsonTabs.LOGGER.error("Tab layout of {} bytes exceeds the packet size limit, not syncing it to '{}'", size, player.getScoreboardName());
+                KNOWN_HASHES.remove(player.getUUID());
+                return;
+            }
+
+            CHANNEL.send(PacketDistributor.PLAYER.with(() -> player), packet);
+            JsonTabs.LOGGER.debug(
+                    "Sent {} tab layout {} to '{}' ({} bytes)",
+                    base != null ? "delta" : "full", Long.toHexString(currentHash), player.getScoreboardName(), size
+            );
+        }
+        finally
+        {
+            buf.release();
+        }
+    }
+
+    private static void writeDelta(FriendlyByteBuf buf, List<TabDefinition> base, List<TabDefinition> layout)
+    {
+        Map<ResourceLocation, TabDefinition> baseByName = new HashMap<>();
+        base.forEach(def -> baseByName.put(def.name(), def));
+
+        List<TabDefinition> changed = layout.stream()
+                .filter(def -> !def.equals(baseByName.get(def.name())))
+                .toList();
+
+        LayoutCodec.writeNames(buf, layout.stream().map(TabDefinition::name).toList());
+        LayoutCodec.writeDefinitions(buf, changed, true);
+    }
+
+    private static void updateSnapshot()
+    {
+        List<TabDefinition> layout = JsonTabManager.getLocalDefinitions();
+        if (layout != currentLayout)
+        {
+            currentLayout = layout;
+            currentHash = LayoutCodec.hash(layout);
+            SNAPSHOTS.put(currentHash, layout);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package xfacthd.jsontabs.tabs;
+
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.world.flag.FeatureFlagSet;
+import net.minecraft.world.item.CreativeModeTab;
+import net.minecraft.world.item.ItemStack;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Wraps a {@link CreativeModeTab.DisplayItemsGenerator} and replays its previous output when it is called
+ * again with enabled features and permission state that were already seen
+ */
+public final class CachingDisplayGenerator implements CreativeModeTab.DisplayItemsGenerator
+{
+    private static final int MAX_ENTRIES = 4;
+    private static final AtomicLong TOTAL_HITS = new AtomicLong();
+    private static final AtomicLong TOTAL_MISSES = new AtomicLong();
+
+    private final ResourceLocation tabName;
+    private final CreativeModeTab.DisplayItemsGenerator wrapped;
+    private final Map<Key, List<Emitted>> cache = new LinkedHashMap<>(MAX_ENTRIES, .75F, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, List<Emitted>> eldest)
+        {
+            return size() > MAX_ENTRIES;
+        }
+    };
+    private int tagGeneration = ItemIndex.getTagGeneration();
+    private int idGeneration = ItemIndex.getIdGeneration();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public CachingDisplayGenerator(ResourceLocation tabName, CreativeModeTab.DisplayItemsGenerator wrapped)
+    {
+        this.tabName = tabName;
+        this.wrapped = wrapped;
+    }
+
+    @Override
+    public void accept(CreativeModeTab.ItemDisplayParameters params, CreativeModeTab.Output output)
+    {
+        long start = System.nanoTime();
+
+        // The wrapped generators only depend on the enabled features and the permission flag
+        Key key = new Key(params.enabledFeatures(), params.hasPermissions());
+
+        List<Emitted> emitted;
+        synchronized (cache)
+        {
+            // Contents resolved from tags change when the tags are reloaded, contents stored as IDs when the IDs are remapped
+            int generation = ItemIndex.getTagGeneration();
+            int ids = ItemIndex.getIdGeneration();
+            if (generation != tagGeneration || ids != idGeneration)
+            {
+                cache.clear();
+                tagGeneration = generation;
+                idGeneration = ids;
+            }
+            emitted = cache.get(key);
+        }
+
+        if (emitted != null)
+        {
+            hits.incrementAndGet();
+            TOTAL_HITS.incrementAndGet();
+        }
+        else
+        {
+            misses.incrementAndGet();
+            TOTAL_MISSES.incrementAndGet();
+
+            List<Emitted> collected = new ArrayList<>();
+            wrapped.accept(params, (stack, visibility) -> collected.add(new Emitted(stack, visibility)));
+            emitted = List.copyOf(collected);
+            synchronized (cache)
+            {
+                cache.put(key, emitted);
+            }
+        }
+
+        for (Emitted entry : emitted)
+        {
+            output.accept(entry.stack().copy(), entry.visibility());
+        }
+        TabMetrics.generator(tabName).record(System.nanoTime() - start, emitted.size());
+    }
+
+    public ResourceLocation getTabName()
+    {
+        return tabName;
+    }
+
+    public long getHits()
+    {
+        return hits.get();
+    }
+
+    public long getMisses()
+    {
+        return misses.get();
+    }
+
+    public static long getTotalHits()
+    {
+        return TOTAL_HITS.get();
+    }
+
+    public static long getTotalMisses()
+    {
+        return TOTAL_MISSES.get();
+    }
+
+    public static void resetTotals()
+    {
+        TOTAL_HITS.set(0);
+        TOTAL_MISSES.set(0);
+    }
+
+
+
+    private record Key(FeatureFlagSet features, boolean hasPermissions) { }
+
+    private record Emitted(ItemStack stack, CreativeModeTab.TabVisibility visibility) { }
+}
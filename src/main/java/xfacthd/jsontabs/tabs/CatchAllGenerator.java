@@ -0,0 +1,77 @@
+package xfacthd.jsontabs.tabs;
+
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.world.item.*;
+
+import java.util.*;
+
+/**
+ * Display generator of a catch-all tab. Emits the tab's own contents followed by every enabled item which isn't
+ * placed in any other tab of the layout. The placed items are tracked in a bitset over the item registry IDs,
+ * which makes computing the remaining items linear in the size of the registry. The ID order is taken from the
+ * {@link ItemIndex}, which is dropped when Forge remaps the item IDs. The vanilla tabs of the layout are rebuilt
+ * with the given parameters before their items are collected
+ */
+final class CatchAllGenerator implements CreativeModeTab.DisplayItemsGenerator
+{
+    private final TabContentGenerator ownContents;
+    private final CatchAllOrder order;
+    private final List<TabContentGenerator> otherTabs;
+    private final List<CreativeModeTab> vanillaTabs;
+
+    /**
+     * @param ownContents The generator of the catch-all tab's own contents
+     * @param order The order of the collected items
+     * @param otherTabs The generators of all other tabs built from definitions, may be filled after construction
+     * @param vanillaTabs The vanilla tabs used in the layout, may be filled after construction
+     */
+    CatchAllGenerator(
+            TabContentGenerator ownContents,
+            CatchAllOrder order,
+            List<TabContentGenerator> otherTabs,
+            List<CreativeModeTab> vanillaTabs
+    )
+    {
+        this.ownContents = ownContents;
+        this.order = order;
+        this.otherTabs = otherTabs;
+        this.vanillaTabs = vanillaTabs;
+    }
+
+    @Override
+    public void accept(CreativeModeTab.ItemDisplayParameters params, CreativeModeTab.Output output)
+    {
+        ownContents.accept(params, output);
+
+        BitSet placed = new BitSet(BuiltInRegistries.ITEM.size());
+        placed.or(ownContents.getResolvedItems());
+        for (TabContentGenerator generator : otherTabs)
+        {
+            placed.or(generator.getResolvedItems());
+        }
+        for (CreativeModeTab tab : vanillaTabs)
+        {
+            // The tab may hold contents built with other parameters or none at all, the cached output of this
+            // generator must only depend on the current parameters
+            tab.buildContents(params);
+            for (ItemStack stack : tab.getDisplayItems())
+            {
+                placed.set(BuiltInRegistries.ITEM.getId(stack.getItem()));
+            }
+        }
+
+        for (int id : ItemIndex.get().getOrderedIds(order))
+        {
+            if (placed.get(id))
+            {
+                continue;
+            }
+
+            Item item = BuiltInRegistries.ITEM.byId(id);
+            if (item.isEnabled(params.enabledFeatures()))
+            {
+                output.accept(new ItemStack(item));
+            }
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package xfacthd.jsontabs.tabs;
+
+import com.mojang.serialization.Codec;
+import net.minecraft.util.StringRepresentable;
+
+import java.util.Locale;
+
+/**
+ * Order of the items collected by a catch-all tab
+ */
+public enum CatchAllOrder implements StringRepresentable
+{
+    /**
+     * Items are ordered by their registry ID
+     */
+    REGISTRY,
+    /**
+     * Items are grouped by namespace, namespaces are ordered alphabetically and the items of each namespace are
+     * ordered by their registry ID
+     */
+    NAMESPACE;
+
+    public static final Codec<CatchAllOrder> CODEC = StringRepresentable.fromEnum(CatchAllOrder::values);
+
+    private final String name = name().toLowerCase(Locale.ROOT);
+
+    @Override
+    public String getSerializedName()
+    {
+        return name;
+    }
+}
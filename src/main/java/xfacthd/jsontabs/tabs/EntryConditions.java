@@ -0,0 +1,73 @@
+package xfacthd.jsontabs.tabs;
+
+import com.mojang.serialization.Codec;
+import com.mojang.serialization.codecs.RecordCodecBuilder;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.world.flag.FeatureFlagSet;
+import net.minecraft.world.flag.FeatureFlags;
+import net.minecraftforge.fml.ModList;
+import xfacthd.jsontabs.JsonTabs;
+import xfacthd.jsontabs.JsonTabsConfig;
+
+import java.util.List;
+
+/**
+ * Conditions an entry of a tab depends on. Mods and toggles don't change while the game runs and are evaluated
+ * once when the contents are resolved, feature flags depend on the world and are checked when the contents are
+ * built
+ * @param mods The IDs of the mods which must be loaded
+ * @param features The feature flags which must be enabled in addition to the ones required by the items themselves
+ * @param toggles The toggles which must be enabled in the config
+ */
+public record EntryConditions(List<String> mods, List<ResourceLocation> features, List<String> toggles)
+{
+    public static final EntryConditions NONE = new EntryConditions(List.of(), List.of(), List.of());
+    public static final Codec<EntryConditions> CODEC = RecordCodecBuilder.create(instance -> instance.group(
+            Codec.STRING.listOf().optionalFieldOf("mods", List.of()).forGetter(EntryConditions::mods),
+            ResourceLocation.CODEC.listOf().optionalFieldOf("features", List.of()).forGetter(EntryConditions::features),
+            Codec.STRING.listOf().optionalFieldOf("toggles", List.of()).forGetter(EntryConditions::toggles)
+    ).apply(instance, EntryConditions::new));
+
+    public boolean isEmpty()
+    {
+        return mods.isEmpty() && features.isEmpty() && toggles.isEmpty();
+    }
+
+    /**
+     * {@return true if all required mods are loaded and all required toggles are enabled}
+     */
+    public boolean testStatic()
+    {
+        for (String mod : mods)
+        {
+            if (!ModList.get().isLoaded(mod))
+            {
+                return false;
+            }
+        }
+
+        List<? extends String> enabledToggles = toggles.isEmpty() ? List.of() : JsonTabsConfig.TOGGLES.get();
+        for (String toggle : toggles)
+        {
+            if (!enabledToggles.contains(toggle))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * {@return the feature flags required by these conditions, unknown flags are reported and ignored}
+     */
+    public FeatureFlagSet resolveFeatures(ResourceLocation tabName)
+    {
+        if (features.isEmpty())
+        {
+            return FeatureFlagSet.of();
+        }
+        return FeatureFlags.REGISTRY.fromNames(features, unknown -> JsonTabs.LOGGER.warn(
+                "Unknown feature flag '{}' in conditions of tab definition '{}', ignoring", unknown, tabName
+        ));
+    }
+}
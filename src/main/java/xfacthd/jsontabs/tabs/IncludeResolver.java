@@ -0,0 +1,152 @@
+package xfacthd.jsontabs.tabs;
+
+import com.google.common.collect.LinkedHashMultimap;
+import com.google.common.collect.Multimap;
+import net.minecraft.resources.ResourceLocation;
+import xfacthd.jsontabs.JsonTabs;
+
+import java.util.*;
+
+/**
+ * Resolves the {@code include} entries of a set of {@link TabDefinition}s into the order in which the contents of
+ * their tabs have to be built, every included tab before all tabs including it, with a depth-first search in
+ * O(V+E). Ties keep the order of the definitions.
+ * <p>
+ * Only tabs with their own contents can be included, includes of unknown or vanilla tabs are reported and ignored.
+ * The result of the last resolution is cached and returned again for the same list of definitions
+ */
+public final class IncludeResolver
+{
+    private static volatile CachedIncludes cached = null;
+
+    public static Result resolve(List<TabDefinition> definitions)
+    {
+        CachedIncludes last = cached;
+        if (last != null && last.definitions() == definitions)
+        {
+            return last.result();
+        }
+
+        Map<ResourceLocation, TabDefinition> byName = new LinkedHashMap<>();
+        for (TabDefinition def : definitions)
+        {
+            if (!def.useVanilla())
+            {
+                byName.put(def.name(), def);
+            }
+        }
+
+        Map<ResourceLocation, VisitState> states = new HashMap<>();
+        List<ResourceLocation> order = new ArrayList<>(byName.size());
+        List<List<ResourceLocation>> cycles = new ArrayList<>();
+        Multimap<ResourceLocation, ResourceLocation> unresolved = LinkedHashMultimap.create();
+        for (TabDefinition def : byName.values())
+        {
+            visit(def, byName, states, new ArrayDeque<>(), order, cycles, unresolved);
+        }
+
+        Result result = new Result(List.copyOf(order), List.copyOf(cycles), unresolved);
+        cached = new CachedIncludes(definitions, result);
+        return result;
+    }
+
+    private static void visit(
+            TabDefinition def,
+            Map<ResourceLocation, TabDefinition> byName,
+            Map<ResourceLocation, VisitState> states,
+            Deque<ResourceLocation> path,
+            List<ResourceLocation> order,
+            List<List<ResourceLocation>> cycles,
+            Multimap<ResourceLocation, ResourceLocation> unresolved
+    )
+    {
+        if (states.containsKey(def.name()))
+        {
+            return;
+        }
+
+        states.put(def.name(), VisitState.IN_PROGRESS);
+        path.addLast(def.name());
+        for (TabInclude include : def.includes())
+        {
+            TabDefinition included = byName.get(include.tab());
+            if (included == null)
+            {
+                unresolved.put(def.name(), include.tab());
+                continue;
+            }
+
+            if (states.get(include.tab()) == VisitState.IN_PROGRESS)
+            {
+                // The included tab is on the current path, the edge closes a cycle and is left out of the order
+                List<ResourceLocation> cycle = new ArrayList<>();
+                boolean inCycle = false;
+                for (ResourceLocation name : path)
+                {
+                    inCycle |= name.equals(include.tab());
+                    if (inCycle)
+                    {
+                        cycle.add(name);
+                    }
+                }
+                cycles.add(cycle);
+                continue;
+            }
+            visit(included, byName, states, path, order, cycles, unresolved);
+        }
+        path.removeLast();
+        states.put(def.name(), VisitState.DONE);
+        order.add(def.name());
+    }
+
+
+
+    private enum VisitState
+    {
+        IN_PROGRESS,
+        DONE
+    }
+
+    private record CachedIncludes(List<TabDefinition> definitions, Result result) { }
+
+    /**
+     * @param order All tabs with their own contents, every included tab before the tabs including it. Includes
+     *              closing a cycle are left out of the order
+     * @param cycles The cycles found in the include graph, each in the direction of the includes
+     * @param unresolved The included names which don't refer to a tab with its own contents by the including tab
+     */
+    public record Result(
+            List<ResourceLocation> order,
+            List<List<ResourceLocation>> cycles,
+            Multimap<ResourceLocation, ResourceLocation> unresolved
+    )
+    {
+        public boolean hasCycles()
+        {
+            return !cycles.isEmpty();
+        }
+
+        public void logCycles()
+        {
+            StringBuilder report = new StringBuilder();
+            for (List<ResourceLocation> cycle : cycles)
+            {
+                report.append("\n - ");
+                for (ResourceLocation name : cycle)
+                {
+                    report.append(name).append(" -> ");
+                }
+                report.append(cycle.get(0));
+            }
+            JsonTabs.LOGGER.error("Found {} cycle(s) in tab includes, 'a -> b' means 'a' includes 'b':{}", cycles.size(), report);
+        }
+
+        public void logUnresolved()
+        {
+            unresolved.forEach((referrer, name) -> JsonTabs.LOGGER.warn(
+                    "Tab definition '{}' includes tab '{}' which is not defined by any tab definition or uses a vanilla tab, ignoring",
+                    referrer, name
+            ));
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package xfacthd.jsontabs.tabs;
+
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.tags.ItemTags;
+import net.minecraft.world.item.Item;
+import net.minecraft.world.item.Items;
+import net.minecraftforge.registries.ForgeRegistries;
+import net.minecraftforge.registries.tags.ITagManager;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Index over the item registry used to expand {@link ItemSelector} patterns without scanning the whole registry
+ * for every pattern. Item paths are kept in sorted arrays, forwards for prefix lookups and reversed for suffix
+ * lookups, so a lookup costs a binary search plus the number of matches. Expansions are cached until the
+ * registry index is dropped or, for tags, until the tags are reloaded
+ */
+public final class ItemIndex
+{
+    private static volatile ItemIndex instance = null;
+    private static volatile int tagGeneration = 0;
+    private static volatile int idGeneration = 0;
+
+    private final Map<String, List<Item>> byNamespace;
+    private final IndexedPath[] byPath;
+    private final IndexedPath[] byReversedPath;
+    private final int[] idsByRegistry;
+    private final int[] idsByNamespace;
+    private final Map<ItemSelector, List<Item>> patternCache = new ConcurrentHashMap<>();
+    private final Map<ItemSelector, List<Item>> tagCache = new ConcurrentHashMap<>();
+    private volatile int cachedTagGeneration = tagGeneration;
+
+    private ItemIndex()
+    {
+        Map<String, List<Item>> namespaces = new HashMap<>();
+        List<IndexedPath> paths = new ArrayList<>();
+        // Iterating the registry yields the items in ID order
+        for (Item item : BuiltInRegistries.ITEM)
+        {
+            ResourceLocation name = BuiltInRegistries.ITEM.getKey(item);
+            if (item == Items.AIR)
+            {
+                continue;
+            }
+
+            namespaces.computeIfAbsent(name.getNamespace(), ns -> new ArrayList<>()).add(item);
+            paths.add(new IndexedPath(name.getPath(), name.getNamespace(), item));
+        }
+
+        namespaces.replaceAll((ns, items) -> List.copyOf(items));
+        this.byNamespace = namespaces;
+        this.byPath = paths.stream()
+                .sorted(Comparator.comparing(IndexedPath::key))
+                .toArray(IndexedPath[]::new);
+        this.byReversedPath = paths.stream()
+                .map(path -> new IndexedPath(new StringBuilder(path.key()).reverse().toString(), path.namespace(), path.item()))
+                .sorted(Comparator.comparing(IndexedPath::key))
+                .toArray(IndexedPath[]::new);
+        this.idsByRegistry = paths.stream()
+                .mapToInt(path -> BuiltInRegistries.ITEM.getId(path.item()))
+                .toArray();
+        this.idsByNamespace = namespaces.keySet()
+                .stream()
+                .sorted()
+                .flatMap(ns -> namespaces.get(ns).stream())
+                .mapToInt(BuiltInRegistries.ITEM::getId)
+                .toArray();
+    }
+
+    /**
+     * {@return the index for the current registry contents, built on first use}
+     */
+    public static ItemIndex get()
+    {
+        ItemIndex index = instance;
+        if (index == null)
+        {
+            synchronized (ItemIndex.class)
+            {
+                index = instance;
+                if (index == null)
+                {
+                    index = new ItemIndex();
+                    instance = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Drop the index, must be called before loading a new set of definitions
+     */
+    public static void invalidate()
+    {
+        instance = null;
+    }
+
+    /**
+     * Drop the index and invalidate all content derived from registry IDs, must be called when Forge remaps the
+     * item IDs
+     */
+    public static void invalidateIds()
+    {
+        instance = null;
+        idGeneration++;
+    }
+
+    /**
+     * {@return a counter which changes every time the item IDs are remapped, used to invalidate content stored as
+     * registry IDs}
+     */
+    public static int getIdGeneration()
+    {
+        return idGeneration;
+    }
+
+    /**
+     * Drop all cached tag expansions, must be called when tags are reloaded
+     */
+    public static void invalidateTags()
+    {
+        tagGeneration++;
+    }
+
+    /**
+     * {@return a counter which changes every time the tags are reloaded, used to invalidate content derived from tags}
+     */
+    public static int getTagGeneration()
+    {
+        return tagGeneration;
+    }
+
+    /**
+     * Expand the given selector into the items it matches, in registry order
+     */
+    public List<Item> expand(ItemSelector selector)
+    {
+        return switch (selector.type())
+        {
+            case ITEM ->
+            {
+                Item item = ForgeRegistries.ITEMS.getValue(selector.location());
+                yield item == null || item == Items.AIR ? List.of() : List.of(item);
+            }
+            case TAG -> expandTag(selector);
+            case NAMESPACE -> byNamespace.getOrDefault(selector.namespace(), List.of());
+            case PREFIX -> patternCache.computeIfAbsent(selector, sel -> collect(byPath, sel.path(), sel.namespace()));
+            case SUFFIX -> patternCache.computeIfAbsent(selector, sel -> collect(
+                    byReversedPath, new StringBuilder(sel.path()).reverse().toString(), sel.namespace()
+            ));
+        };
+    }
+
+    /**
+     * {@return the registry IDs of all items except air in the given order}
+     */
+    public int[] getOrderedIds(CatchAllOrder order)
+    {
+        return switch (order)
+        {
+            case REGISTRY -> idsByRegistry;
+            case NAMESPACE -> idsByNamespace;
+        };
+    }
+
+    private List<Item> expandTag(ItemSelector selector)
+    {
+        int generation = tagGeneration;
+        if (generation != cachedTagGeneration)
+        {
+            tagCache.clear();
+            cachedTagGeneration = generation;
+        }
+
+        return tagCache.computeIfAbsent(selector, sel ->
+        {
+            ITagManager<Item> tags = Objects.requireNonNull(ForgeRegistries.ITEMS.tags());
+            List<Item> items = new ArrayList<>();
+            tags.getTag(ItemTags.create(sel.location())).forEach(items::add);
+            return List.copyOf(items);
+        });
+    }
+
+    private static List<Item> collect(IndexedPath[] paths, String prefix, String namespace)
+    {
+        int idx = lowerBound(paths, prefix);
+        List<Item> items = new ArrayList<>();
+        while (idx < paths.length && paths[idx].key().startsWith(prefix))
+        {
+            IndexedPath path = paths[idx];
+            if (namespace == null || namespace.equals(path.namespace()))
+            {
+                items.add(path.item());
+            }
+            idx++;
+        }
+        items.sort(Comparator.comparingInt(BuiltInRegistries.ITEM::getId));
+        return List.copyOf(items);
+    }
+
+    private static int lowerBound(IndexedPath[] paths, String key)
+    {
+        int low = 0;
+        int high = paths.length;
+        while (low < high)
+        {
+            int mid = (low + high) >>> 1;
+            if (paths[mid].key().compareTo(key) < 0)
+            {
+                low = mid + 1;
+            }
+            else
+            {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+
+
+    private record IndexedPath(String key, String namespace, Item item) { }
+}
@@ -0,0 +1,129 @@
+package xfacthd.jsontabs.tabs;
+
+import com.mojang.serialization.Codec;
+import com.mojang.serialization.DataResult;
+import net.minecraft.resources.ResourceLocation;
+
+/**
+ * Selects one or more items by registry name. Supported forms:
+ * <ul>
+ *     <li>{@code namespace:path}: a single item</li>
+ *     <li>{@code #namespace:path}: all items in the given item tag</li>
+ *     <li>{@code namespace:*}: all items of the given namespace</li>
+ *     <li>{@code [namespace:]prefix*}: all items whose path starts with the given prefix</li>
+ *     <li>{@code [namespace:]*suffix}: all items whose path ends with the given suffix</li>
+ * </ul>
+ * Patterns without a namespace match items of any namespace
+ * @param type The kind of selector
+ * @param namespace The namespace, null for patterns matching any namespace
+ * @param path The item or tag path or the fixed part of a pattern, empty for namespace wildcards
+ */
+public record ItemSelector(Type type, String namespace, String path)
+{
+    public static final Codec<ItemSelector> CODEC = Codec.STRING.comapFlatMap(ItemSelector::parse, ItemSelector::toString);
+
+    public static ItemSelector item(ResourceLocation name)
+    {
+        return new ItemSelector(Type.ITEM, name.getNamespace(), name.getPath());
+    }
+
+    public boolean isSingleItem()
+    {
+        return type == Type.ITEM;
+    }
+
+    /**
+     * {@return the item or tag name of this selector}
+     * @throws IllegalStateException if this selector is a pattern
+     */
+    public ResourceLocation location()
+    {
+        if (type != Type.ITEM && type != Type.TAG)
+        {
+            throw new IllegalStateException("Pattern selector '" + this + "' has no location");
+        }
+        return new ResourceLocation(namespace, path);
+    }
+
+    public static DataResult<ItemSelector> parse(String value)
+    {
+        if (value.startsWith("#"))
+        {
+            return ResourceLocation.read(value.substring(1)).map(tag -> new ItemSelector(Type.TAG, tag.getNamespace(), tag.getPath()));
+        }
+
+        int wildcard = value.indexOf('*');
+        if (wildcard == -1)
+        {
+            return ResourceLocation.read(value).map(ItemSelector::item);
+        }
+        if (value.indexOf('*', wildcard + 1) != -1)
+        {
+            return DataResult.error(() -> "Item pattern '" + value + "' contains more than one wildcard");
+        }
+
+        int colon = value.indexOf(':');
+        String namespace = colon == -1 ? null : value.substring(0, colon);
+        String pattern = value.substring(colon + 1);
+        if (namespace != null && !ResourceLocation.isValidNamespace(namespace))
+        {
+            return DataResult.error(() -> "Non [a-z0-9_.-] character in namespace of item pattern: " + value);
+        }
+
+        Type type;
+        String path;
+        if (pattern.equals("*"))
+        {
+            if (namespace == null)
+            {
+                return DataResult.error(() -> "Item pattern '" + value + "' matches every item");
+            }
+            type = Type.NAMESPACE;
+            path = "";
+        }
+        else if (pattern.endsWith("*"))
+        {
+            type = Type.PREFIX;
+            path = pattern.substring(0, pattern.length() - 1);
+        }
+        else if (pattern.startsWith("*"))
+        {
+            type = Type.SUFFIX;
+            path = pattern.substring(1);
+        }
+        else
+        {
+            return DataResult.error(() -> "Wildcard of item pattern '" + value + "' must be at the start or end of the path");
+        }
+
+        if (!ResourceLocation.isValidPath(path))
+        {
+            return DataResult.error(() -> "Non [a-z0-9/._-] character in path of item pattern: " + value);
+        }
+        return DataResult.success(new ItemSelector(type, namespace, path));
+    }
+
+    @Override
+    public String toString()
+    {
+        return switch (type)
+        {
+            case ITEM -> namespace + ":" + path;
+            case TAG -> "#" + namespace + ":" + path;
+            case NAMESPACE -> namespace + ":*";
+            case PREFIX -> (namespace != null ? namespace + ":" : "") + path + "*";
+            case SUFFIX -> (namespace != null ? namespace + ":" : "") + "*" + path;
+        };
+    }
+
+
+
+    public enum Type
+    {
+        ITEM,
+        TAG,
+        NAMESPACE,
+        PREFIX,
+        SUFFIX
+    }
+}
@@ -1,116 +1,712 @@
 package xfacthd.jsontabs.tabs;
 
 import com.google.common.collect.*;
-import com.google.gson.*;
-import com.mojang.serialization.*;
-import com.mojang.serialization.codecs.RecordCodecBuilder;
+import net.minecraft.Util;
 import net.minecraft.network.chat.Component;
 import net.minecraft.resources.ResourceLocation;
-import net.minecraft.util.ExtraCodecs;
 import net.minecraft.world.item.CreativeModeTab;
 import net.minecraftforge.fml.loading.FMLPaths;
 import net.minecraftforge.fml.loading.FileUtils;
 import xfacthd.jsontabs.JsonTabs;
-import xfacthd.jsontabs.util.Utils;
+import xfacthd.jsontabs.JsonTabsConfig;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.regex.Pattern;
 import java.util.stream.Stream;
 
+/**
+ * Holds the tab layouts built from the definition directory. Every layout profile is a directory of definitions,
+ * the {@link #DEFAULT_PROFILE default profile} being the definition directory itself and every other profile one
+ * of its subdirectories. Each profile is compiled into an immutable {@link Layout} of tabs, sorted edges and
+ * content generators. The profile following the active one is prepared ahead of time in the background, which
+ * sorts its definitions and resolves its contents. Switching profiles therefore only builds the tab instances on
+ * the main thread and swaps the current layout
+ */
 public final class JsonTabManager
 {
     public static final Path TABS_PATH = FMLPaths.GAMEDIR.get().resolve("jsontabs");
-    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
-
-    private static final Codec<TabDefinition> CODEC = RecordCodecBuilder.create(instance -> instance.group(
-            ResourceLocation.CODEC.fieldOf("name").forGetter(TabDefinition::name),
-            Codec.BOOL.optionalFieldOf("use_vanilla").forGetter(TabDefinition::useVanillaOpt),
-            ResourceLocation.CODEC.listOf().fieldOf("after").forGetter(TabDefinition::after),
-            ResourceLocation.CODEC.listOf().fieldOf("before").forGetter(TabDefinition::before),
-            new ExtraCodecs.EitherCodec<>(
-                    TabEntry.CODEC_SIMPLE,
-                    TabEntry.CODEC_DATA
-            ).fieldOf("icon").xmap(TabEntry::crossMapTo, TabEntry::crossMapFrom).forGetter(TabDefinition::icon),
-            Codec.BOOL.optionalFieldOf("no_title").forGetter(TabDefinition::noTitleOpt),
-            Codec.BOOL.optionalFieldOf("no_scrollbar").forGetter(TabDefinition::noScrollOpt),
-            ResourceLocation.CODEC.optionalFieldOf("background").forGetter(TabDefinition::backgroundOpt),
-            Utils.FLEXIBLE_INT_CODEC.optionalFieldOf("label_color").forGetter(TabDefinition::labelColorOpt),
-            Codec.BOOL.optionalFieldOf("search_bar").forGetter(TabDefinition::searchBarOpt),
-            Codec.INT.optionalFieldOf("search_bar_width").forGetter(TabDefinition::searchBarWidthOpt),
-            Utils.FLEXIBLE_INT_CODEC.optionalFieldOf("slot_color").forGetter(TabDefinition::labelColorOpt),
-            ResourceLocation.CODEC.optionalFieldOf("tab_image").forGetter(TabDefinition::tabImageOpt),
-            new ExtraCodecs.EitherCodec<>(
-                    TabEntry.CODEC_SIMPLE,
-                    TabEntry.CODEC_DATA
-            ).listOf().fieldOf("contents").xmap(TabEntry::crossMapTo, TabEntry::crossMapFrom).forGetter(TabDefinition::contents)
-    ).apply(instance, TabDefinition::new));
-
-    private static final BiMap<ResourceLocation, CreativeModeTab> TABS = HashBiMap.create();
-    private static final Multimap<ResourceLocation, ResourceLocation> EDGES = HashMultimap.create();
+    public static final String DEFAULT_PROFILE = "default";
+    // Subdirectories written to by the mod itself
+    private static final Set<String> RESERVED_DIRECTORIES = Set.of(".cache", "resources", "stats", "validator", "perf");
+    // Hidden directories, such as the definition cache, are never profiles
+    private static final Pattern PROFILE_NAME = Pattern.compile("[a-z0-9_-][a-z0-9_.-]*");
+
+    private static final Map<String, Profile> PROFILES = new HashMap<>();
+    private static volatile Layout layout = Layout.EMPTY;
+    private static volatile String activeProfile = DEFAULT_PROFILE;
+    private static volatile CompletableFuture<Preload> preload = null;
+    private static boolean remoteLayout = false;
+
+    /**
+     * Start reading and decoding the definition files of all profiles on a background thread. Decoding doesn't
+     * depend on the registries, this allows it to overlap with mod construction and registration. The result is
+     * picked up by {@link #load()}
+     */
+    public static void startPreload()
+    {
+        TabMetrics.reset();
+        long start = System.nanoTime();
+        preload = CompletableFuture.supplyAsync(() ->
+        {
+            try
+            {
+                return new Preload(readAllProfiles(), System.nanoTime() - start);
+            }
+            catch (IOException e)
+            {
+                throw new UncheckedIOException(e);
+            }
+        }, Util.backgroundExecutor());
+    }
 
     public static void load()
     {
+        long start = System.nanoTime();
+
+        NbtPool.reset();
+        ItemIndex.invalidate();
+        CachingDisplayGenerator.resetTotals();
+
+        CompletableFuture<Preload> future = preload;
+        preload = null;
+
+        Map<String, TabDefinitionLoader.Result> results;
+        long preloadTime = 0L;
         try
         {
-            FileUtils.getOrCreateDirectory(TABS_PATH, "JsonTabs CreativeModeTab definitions");
+            if (future != null)
+            {
+                Preload preloaded = future.join();
+                results = preloaded.results();
+                preloadTime = preloaded.duration();
+            }
+            else
+            {
+                TabMetrics.reset();
+                results = readAllProfiles();
+            }
         }
-        catch (Throwable t)
+        catch (IOException | RuntimeException e)
         {
-            JsonTabs.LOGGER.error("Failed to create tab definitions directory", t);
-            loadVanillaFallback();
+            Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+            JsonTabs.LOGGER.error("Encountered an error while reading tab definitions", cause);
+            layout = buildVanillaLayout();
             return;
         }
+        long waitTime = System.nanoTime() - start;
 
-        Map<ResourceLocation, Path> processed = new HashMap<>();
-        List<TabDefinition> definitions = new ArrayList<>();
-        try (Stream<Path> paths = Files.list(TABS_PATH))
+        activeProfile = findConfiguredProfile(results.keySet());
+        synchronized (PROFILES)
         {
-            paths.filter(Files::isRegularFile)
-                    .filter(filePath -> filePath.toString().endsWith(".json"))
-                    .forEach(filePath ->
-                    {
-                        JsonObject json = Utils.readJsonFile(filePath, GSON);
-                        DataResult<TabDefinition> def = CODEC.parse(JsonOps.INSTANCE, json);
-                        if (def.error().isPresent())
-                        {
-                            throw new JsonParseException(def.error().get().message());
-                        }
-
-                        TabDefinition tabDef = def.result().orElseThrow(() -> new JsonParseException(
-                                "Unknown error while retrieving parsed tab definition"
-                        ));
-                        if (processed.containsKey(tabDef.name()))
-                        {
-                            throw new JsonParseException(String.format(
-                                    "Found duplicated tab name '%s' in file '%s', previously found in '%s'",
-                                    tabDef.name(),
-                                    filePath.toAbsolutePath().normalize(),
-                                    processed.get(tabDef.name()).toAbsolutePath().normalize()
-                            ));
-                        }
-
-                        processed.put(tabDef.name(), filePath);
-                        definitions.add(tabDef);
-                    });
-        }
-        catch (IOException | JsonParseException e)
-        {
-            JsonTabs.LOGGER.error("Encountered an error while loading tab definitions", e);
-            loadVanillaFallback();
+            PROFILES.clear();
+            // Invalid profiles are read again and report their errors when they are used
+            results.forEach((name, result) ->
+            {
+                if (!result.hasErrors())
+                {
+                    PROFILES.put(name, new Profile(name, result.files(), result.definitions(), null, null));
+                }
+            });
+        }
+
+        TabDefinitionLoader.Result result = results.get(activeProfile);
+        if (result == null || result.hasErrors())
+        {
+            if (result != null)
+            {
+                result.logErrors();
+            }
+            layout = buildVanillaLayout();
+            return;
+        }
+
+        Profile profile = compileProfile(activeProfile);
+        if (profile == null)
+        {
+            layout = buildVanillaLayout();
             return;
         }
+        layout = profile.layout();
+        precompileNext();
+
+        long totalTime = System.nanoTime() - start;
+        TabMetrics.recordLoad(totalTime);
+        if (future != null)
+        {
+            JsonTabs.LOGGER.info(
+                    "Loaded {} tab definitions of profile '{}' in {}ms ({}ms read in background, {}ms waiting for it, {}ms building tabs), saved {}ms",
+                    result.definitions().size(),
+                    activeProfile,
+                    toMillis(totalTime),
+                    toMillis(preloadTime),
+                    toMillis(waitTime),
+                    toMillis(totalTime - waitTime),
+                    toMillis(Math.max(preloadTime - waitTime, 0L))
+            );
+        }
+        else
+        {
+            JsonTabs.LOGGER.info("Loaded {} tab definitions of profile '{}' in {}ms", result.definitions().size(), activeProfile, toMillis(totalTime));
+        }
+    }
+
+    /**
+     * Re-read the directory of the active profile. Only files which changed since the last load are decoded
+     * again, all others are taken from the previous load. May be called from any thread
+     * @return The reload to apply with {@link #applyReload(Reload)} or null if nothing changed or the new
+     *         definitions are invalid
+     */
+    public static Reload prepareReload()
+    {
+        String profileName = activeProfile;
+        Profile profile;
+        synchronized (PROFILES)
+        {
+            profile = PROFILES.get(profileName);
+        }
+
+        TabDefinitionLoader.Result result;
+        try
+        {
+            result = readDefinitions(profileName, profile != null ? profile.files() : Map.of());
+        }
+        catch (IOException e)
+        {
+            JsonTabs.LOGGER.error("Encountered an error while listing tab definitions, keeping current tabs", e);
+            return null;
+        }
 
+        if (result.hasErrors())
+        {
+            result.logErrors();
+            JsonTabs.LOGGER.error("Reloaded tab definitions are invalid, keeping current tabs");
+            return null;
+        }
+
+        TabSorter.Result order = checkDefinitions(result.definitions());
+        if (order == null)
+        {
+            JsonTabs.LOGGER.error("Reloaded tab definitions can't be sorted or include each other, keeping current tabs");
+            return null;
+        }
+        return result.changed() ? new Reload(profileName, result, order) : null;
+    }
+
+    /**
+     * Apply a reload prepared by {@link #prepareReload()}. Tabs whose definition didn't change keep their
+     * instance and cached contents. Must be called on the main thread
+     * @return The tabs which were newly built and need their contents to be built
+     */
+    public static List<CreativeModeTab> applyReload(Reload reload)
+    {
+        TabDefinitionLoader.Result result = reload.result();
+        Profile previous;
+        synchronized (PROFILES)
+        {
+            previous = PROFILES.get(reload.profile());
+        }
+
+        // Layouts are only built on the main thread, the previous layout can't change while building
+        Layout previousLayout = previous != null ? previous.layout() : null;
+        List<CreativeModeTab> createdTabs = new ArrayList<>();
+        Prepared prepared = prepareLayout(result.definitions(), reload.order(), previousLayout);
+        Layout compiled = buildLayout(result.definitions(), prepared, previousLayout, createdTabs);
+        Profile updated = new Profile(reload.profile(), result.files(), result.definitions(), prepared, compiled);
+        synchronized (PROFILES)
+        {
+            PROFILES.put(reload.profile(), updated);
+        }
+
+        if (remoteLayout || !reload.profile().equals(activeProfile))
+        {
+            // The reloaded profile takes effect when it becomes the active profile or the remote layout is dropped
+            return List.of();
+        }
+        layout = updated.layout();
+        return createdTabs;
+    }
+
+    /**
+     * Replace the current tabs with a layout received from the server, the local layout is kept to be restored
+     * with {@link #restoreLocalLayout()}. Must be called on the main thread
+     * @return The tabs which were newly built and need their contents to be built or null if the layout can't be
+     *         sorted or includes itself and was therefore rejected
+     */
+    public static List<CreativeModeTab> applyRemoteLayout(List<TabDefinition> definitions)
+    {
+        TabSorter.Result order = checkDefinitions(definitions);
+        if (order == null)
+        {
+            return null;
+        }
+
+        List<CreativeModeTab> createdTabs = new ArrayList<>();
+        Layout remote = buildLayout(definitions, prepareLayout(definitions, order, layout), layout, createdTabs);
+        remoteLayout = true;
+        layout = remote;
+        return createdTabs;
+    }
+
+    /**
+     * Drop the layout received from the server and go back to the layout of the active profile. Must be called
+     * on the main thread
+     * @return The tabs whose contents need to be built
+     */
+    public static List<CreativeModeTab> restoreLocalLayout()
+    {
+        if (!remoteLayout)
+        {
+            return List.of();
+        }
+        remoteLayout = false;
+
+        Profile profile = compileProfile(activeProfile);
+        layout = profile != null ? profile.layout() : buildVanillaLayout();
+        return layout.getDefinitionTabs();
+    }
+
+    public static boolean isRemoteLayout()
+    {
+        return remoteLayout;
+    }
+
+    /**
+     * {@return the definitions of the active profile, empty if they were invalid}. May be called from any thread
+     */
+    public static List<TabDefinition> getLocalDefinitions()
+    {
+        synchronized (PROFILES)
+        {
+            Profile profile = PROFILES.get(activeProfile);
+            return profile != null ? profile.definitions() : List.of();
+        }
+    }
+
+    /**
+     * Make the given profile the active one and swap in its layout, compiling it first unless it was compiled
+     * before. Profiles prepared ahead of time only need their tabs to be built. The choice is stored in the config.
+     * Must be called on the main thread
+     * @return The tabs whose contents need to be built or null if the profile doesn't exist or its definitions
+     *         are invalid
+     */
+    public static List<CreativeModeTab> switchProfile(String name)
+    {
+        long start = System.nanoTime();
+        Profile profile = isProfile(name) ? compileProfile(name) : null;
+        if (profile == null)
+        {
+            return null;
+        }
+
+        activeProfile = name;
+        if (JsonTabsConfig.SPEC.isLoaded() && !JsonTabsConfig.PROFILE.get().equals(name))
+        {
+            JsonTabsConfig.PROFILE.set(name);
+            JsonTabsConfig.PROFILE.save();
+        }
+        precompileNext();
+        if (remoteLayout)
+        {
+            // The profile takes effect when the remote layout is dropped
+            return List.of();
+        }
+
+        layout = profile.layout();
+        JsonTabs.LOGGER.info("Switched to tab layout profile '{}' in {}ms", name, toMillis(System.nanoTime() - start));
+        return layout.getDefinitionTabs();
+    }
+
+    public static String getActiveProfile()
+    {
+        return activeProfile;
+    }
+
+    /**
+     * Drop the loaded definitions and compiled layout of the given profile after its files changed, it is read
+     * again when it is used. The active profile is reloaded through {@link #prepareReload()} instead
+     */
+    public static void discardProfile(String name)
+    {
+        if (name.equals(activeProfile))
+        {
+            return;
+        }
+
+        synchronized (PROFILES)
+        {
+            PROFILES.remove(name);
+        }
+        precompileNext();
+    }
+
+    /**
+     * {@return the names of all profiles, the default profile first followed by the other profiles in name order}
+     */
+    public static List<String> listProfiles()
+    {
+        List<String> profiles = new ArrayList<>();
+        profiles.add(DEFAULT_PROFILE);
+        if (!Files.isDirectory(TABS_PATH))
+        {
+            return profiles;
+        }
+
+        try (Stream<Path> stream = Files.list(TABS_PATH))
+        {
+            stream.filter(Files::isDirectory)
+                    .map(dir -> dir.getFileName().toString())
+                    .filter(JsonTabManager::isProfileName)
+                    .sorted()
+                    .forEach(profiles::add);
+        }
+        catch (IOException e)
+        {
+            JsonTabs.LOGGER.error("Failed to list tab layout profiles", e);
+        }
+        return profiles;
+    }
+
+    /**
+     * {@return whether a directory with the given name in the definition directory is a profile}
+     */
+    public static boolean isProfileName(String name)
+    {
+        return !name.equals(DEFAULT_PROFILE) && !RESERVED_DIRECTORIES.contains(name) && PROFILE_NAME.matcher(name).matches();
+    }
+
+    public static Path getProfileDirectory(String name)
+    {
+        return name.equals(DEFAULT_PROFILE) ? TABS_PATH : TABS_PATH.resolve(name);
+    }
+
+    /**
+     * {@return the state and estimated memory use of all profiles}. May be called from any thread
+     */
+    public static List<ProfileStatus> getProfileStatus()
+    {
+        List<ProfileStatus> statuses = new ArrayList<>();
+        for (String name : listProfiles())
+        {
+            Profile profile;
+            synchronized (PROFILES)
+            {
+                profile = PROFILES.get(name);
+            }
+            Prepared prepared = profile != null ? profile.prepared() : null;
+            statuses.add(new ProfileStatus(
+                    name,
+                    name.equals(activeProfile),
+                    profile != null ? profile.definitions().size() : 0,
+                    prepared != null,
+                    prepared != null ? prepared.estimateMemory() : 0L
+            ));
+        }
+        return statuses;
+    }
+
+    /**
+     * Prepare the profile following the active one in the background, so that switching to it only builds its
+     * tabs and swaps the layout. The tabs themselves are left to the main thread. Its contents are only resolved
+     * once tags are available, resolving them earlier would miss the contents of all tag entries. Called again
+     * after every tag reload
+     */
+    public static void precompileNext()
+    {
+        List<String> profiles = listProfiles();
+        String current = activeProfile;
+        String next = profiles.get((profiles.indexOf(current) + 1) % profiles.size());
+        if (next.equals(current))
+        {
+            return;
+        }
+
+        CompletableFuture.runAsync(() ->
+        {
+            long start = System.nanoTime();
+            Profile profile = prepareProfile(next);
+            if (profile == null)
+            {
+                return;
+            }
+
+            boolean resolved = ItemIndex.getTagGeneration() > 0;
+            if (resolved)
+            {
+                profile.prepared().resolveContents();
+            }
+            JsonTabs.LOGGER.debug(
+                    "Prepared tab layout profile '{}' in {}ms ({}), ~{} bytes of resolved contents",
+                    next,
+                    toMillis(System.nanoTime() - start),
+                    resolved ? "contents resolved" : "contents deferred until tags are loaded",
+                    profile.prepared().estimateMemory()
+            );
+        }, Util.backgroundExecutor()).exceptionally(e ->
+        {
+            JsonTabs.LOGGER.error("Failed to precompile tab layout profile '{}'", next, e);
+            return null;
+        });
+    }
+
+    /**
+     * Switch to the configured profile if the config was loaded after the tabs were built. Must be called on the
+     * main thread
+     * @return True if the profile was switched and the tabs need to be installed again
+     */
+    public static boolean onConfigLoaded()
+    {
+        String configured = JsonTabsConfig.PROFILE.get();
+        if (layout == Layout.EMPTY || configured.equals(activeProfile) || !isProfile(configured))
+        {
+            return false;
+        }
+        return switchProfile(configured) != null;
+    }
+
+    private static String findConfiguredProfile(Set<String> profiles)
+    {
+        if (!JsonTabsConfig.SPEC.isLoaded())
+        {
+            // The config may be loaded after the tabs are built, the configured profile is applied then
+            return DEFAULT_PROFILE;
+        }
+
+        String configured = JsonTabsConfig.PROFILE.get();
+        if (!profiles.contains(configured))
+        {
+            JsonTabs.LOGGER.warn("Configured tab layout profile '{}' doesn't exist, using the default profile", configured);
+            return DEFAULT_PROFILE;
+        }
+        return configured;
+    }
+
+    private static boolean isProfile(String name)
+    {
+        return name.equals(DEFAULT_PROFILE) || (isProfileName(name) && Files.isDirectory(getProfileDirectory(name)));
+    }
+
+    /**
+     * {@return the given profile with its layout compiled, prepared first if it wasn't prepared ahead of time, null
+     * if its definitions are invalid}. Must be called on the main thread as it builds the tabs
+     */
+    private static Profile compileProfile(String name)
+    {
+        Profile profile = prepareProfile(name);
+        if (profile == null || profile.layout() != null)
+        {
+            return profile;
+        }
+
+        Layout compiled = buildLayout(profile.definitions(), profile.prepared(), null, new ArrayList<>());
+        return publishProfile(profile, new Profile(name, profile.files(), profile.definitions(), profile.prepared(), compiled));
+    }
+
+    /**
+     * {@return the given profile with its definitions sorted and content generators built, read from its directory
+     * first if it isn't loaded, null if its definitions are invalid}. No tabs are built and the lock is only held
+     * to look up and publish the profile, this may be called from any thread
+     */
+    private static Profile prepareProfile(String name)
+    {
+        Profile profile;
+        synchronized (PROFILES)
+        {
+            profile = PROFILES.get(name);
+        }
+        if (profile != null && profile.prepared() != null)
+        {
+            return profile;
+        }
+
+        Profile loaded = profile != null ? profile : readProfile(name);
+        if (loaded == null)
+        {
+            return null;
+        }
+
+        TabSorter.Result order = checkDefinitions(loaded.definitions());
+        if (order == null)
+        {
+            JsonTabs.LOGGER.error("Tab definitions of profile '{}' can't be sorted or include each other", name);
+            synchronized (PROFILES)
+            {
+                PROFILES.remove(name, profile);
+            }
+            return null;
+        }
+
+        Prepared prepared = prepareLayout(loaded.definitions(), order, null);
+        return publishProfile(profile, new Profile(name, loaded.files(), loaded.definitions(), prepared, null));
+    }
+
+    /**
+     * Store the given profile unless the entry it was derived from changed in the meantime
+     * @param expected The entry the profile was derived from, null if it was read from its directory
+     * @param updated The profile to store
+     * @return The profile to use, an entry compiled further by another thread takes precedence
+     */
+    private static Profile publishProfile(Profile expected, Profile updated)
+    {
+        synchronized (PROFILES)
+        {
+            Profile current = PROFILES.get(updated.name());
+            if (current != null && current != expected && current.layout() != null)
+            {
+                return current;
+            }
+            if (current == expected || (current != null && current.definitions() == updated.definitions()))
+            {
+                PROFILES.put(updated.name(), updated);
+            }
+            return updated;
+        }
+    }
+
+    private static Profile readProfile(String name)
+    {
+        TabDefinitionLoader.Result result;
+        try
+        {
+            result = readDefinitions(name, TabDefinitionCache.read(TabDefinitionCache.getCachePath(name)));
+        }
+        catch (IOException e)
+        {
+            JsonTabs.LOGGER.error("Encountered an error while reading tab definitions of profile '{}'", name, e);
+            return null;
+        }
+
+        if (result.hasErrors())
+        {
+            result.logErrors();
+            JsonTabs.LOGGER.error("Tab definitions of profile '{}' are invalid", name);
+            return null;
+        }
+
+        return new Profile(name, result.files(), result.definitions(), null, null);
+    }
+
+    /**
+     * {@return the sorted order of the given definitions, null if they can't be sorted or include each other}.
+     * Problems are logged
+     */
+    private static TabSorter.Result checkDefinitions(List<TabDefinition> definitions)
+    {
+        TabSorter.Result order = TabSorter.sort(definitions);
+        if (order.hasCycles())
+        {
+            order.logCycles();
+            return null;
+        }
+
+        IncludeResolver.Result includes = IncludeResolver.resolve(definitions);
+        if (includes.hasCycles())
+        {
+            includes.logCycles();
+            return null;
+        }
+        return order;
+    }
+
+    /**
+     * Read the definitions of all profiles from scratch, using the on-disk caches where possible. Profiles whose
+     * directory can't be listed are left out
+     */
+    private static Map<String, TabDefinitionLoader.Result> readAllProfiles() throws IOException
+    {
+        FileUtils.getOrCreateDirectory(TABS_PATH, "JsonTabs CreativeModeTab definitions");
+
+        Map<String, TabDefinitionLoader.Result> results = new LinkedHashMap<>();
+        for (String name : listProfiles())
+        {
+            try
+            {
+                results.put(name, readDefinitions(name, TabDefinitionCache.read(TabDefinitionCache.getCachePath(name))));
+            }
+            catch (IOException e)
+            {
+                if (name.equals(DEFAULT_PROFILE))
+                {
+                    throw e;
+                }
+                JsonTabs.LOGGER.error("Encountered an error while reading tab definitions of profile '{}'", name, e);
+            }
+        }
+        return results;
+    }
+
+    private static TabDefinitionLoader.Result readDefinitions(String profile, Map<String, TabDefinitionCache.CachedFile> knownFiles) throws IOException
+    {
+        TabDefinitionLoader.Result result = TabDefinitionLoader.loadDirectory(getProfileDirectory(profile), knownFiles);
+        if (result.changed())
+        {
+            TabDefinitionCache.write(TabDefinitionCache.getCachePath(profile), result.files());
+        }
+        return result;
+    }
+
+    /**
+     * Build the content generators for the given checked definitions, the part of a layout which doesn't create
+     * any tabs and may therefore be done on any thread
+     * @param order The sorted order of the definitions from {@link #checkDefinitions(List)}
+     * @param previous The layout to take content generators with an unchanged definition from, null to build all
+     */
+    private static Prepared prepareLayout(List<TabDefinition> definitions, TabSorter.Result order, Layout previous)
+    {
+        Map<ResourceLocation, BuiltTab> previousTabs = previous != null ? previous.builtTabs() : Map.of();
+        Set<ResourceLocation> changedTabs = new HashSet<>();
+        Map<ResourceLocation, TabContentGenerator> generators = buildContentGenerators(definitions, previousTabs, changedTabs);
+        return new Prepared(order, generators, changedTabs);
+    }
+
+    /**
+     * Build the tabs and edges for the given definitions into a new layout. Must be called on the main thread
+     * @param prepared The content generators prepared against the same previous layout
+     * @param previous The layout to take tabs with an unchanged definition from, null to build all tabs
+     * @param createdTabs Receives the tabs which were newly built
+     */
+    private static Layout buildLayout(List<TabDefinition> definitions, Prepared prepared, Layout previous, List<CreativeModeTab> createdTabs)
+    {
         if (definitions.isEmpty())
         {
             JsonTabs.LOGGER.info("No tab definitions loaded, falling back to vanilla");
-            loadVanillaFallback();
-            return;
+            return buildVanillaLayout();
         }
 
+        Map<ResourceLocation, BuiltTab> previousTabs = previous != null ? previous.builtTabs() : Map.of();
+        LayoutBuilder builder = new LayoutBuilder();
+
+        Set<ResourceLocation> changedTabs = prepared.changedTabs();
+        Map<ResourceLocation, TabContentGenerator> generators = prepared.generators();
+
+        List<TabContentGenerator> contentGenerators = new ArrayList<>();
+        List<CreativeModeTab> vanillaTabs = new ArrayList<>();
+        ResourceLocation catchAllTab = null;
         for (TabDefinition def : definitions)
         {
+            BuiltTab previousTab = previousTabs.get(def.name());
+            // Catch-all tabs depend on the contents of all other tabs and are therefore always rebuilt
+            if (previousTab != null && !changedTabs.contains(def.name()) && previousTab.definition().equals(def) && !def.catchAll())
+            {
+                builder.builtTabs.put(def.name(), previousTab);
+                builder.addTab(previousTab.tab(), def.name(), def.after(), def.before());
+                if (previousTab.contents() != null)
+                {
+                    contentGenerators.add(previousTab.contents());
+                }
+                if (def.useVanilla())
+                {
+                    vanillaTabs.add(previousTab.tab());
+                }
+                continue;
+            }
+
+            long buildStart = System.nanoTime();
             def.checkIgnoredOptions();
 
             if (def.useVanilla())
@@ -125,15 +721,39 @@ public final class JsonTabManager
                     {
                         JsonTabs.LOGGER.warn("Tab definition '{}' is set to use vanilla tab and specifies contents, contents will be ignored", def.name());
                     }
-                    addVanillaTab(def.name(), def.after(), def.before());
+                    builder.builtTabs.put(def.name(), new BuiltTab(def, VanillaTabs.TABS.get(def.name()), null, null, null));
+                    vanillaTabs.add(VanillaTabs.TABS.get(def.name()));
+                    builder.addVanillaTab(def.name(), def.after(), def.before());
                 }
                 continue;
             }
+            CreativeModeTab.DisplayItemsGenerator displayGenerator;
+            TabContentGenerator contentGenerator = null;
+            if (def.catchAll())
+            {
+                if (catchAllTab != null)
+                {
+                    JsonTabs.LOGGER.warn("Tab definition '{}' is a catch-all tab, but '{}' already is one", def.name(), catchAllTab);
+                }
+                catchAllTab = def.name();
+                displayGenerator = new CatchAllGenerator(generators.get(def.name()), def.catchAllOrder(), contentGenerators, vanillaTabs);
+            }
+            else
+            {
+                displayGenerator = def.buildDisplayGenerator(generators.get(def.name()));
+                if (displayGenerator instanceof TabContentGenerator generator)
+                {
+                    contentGenerator = generator;
+                    contentGenerators.add(generator);
+                }
+            }
 
+            CachingDisplayGenerator generator = new CachingDisplayGenerator(def.name(), displayGenerator);
+            LazyDisplayGenerator lazyGenerator = def.lazy() ? new LazyDisplayGenerator(generator, def.makeIconSupplier()) : null;
             CreativeModeTab.Builder tabBuilder = CreativeModeTab.builder(CreativeModeTab.Row.TOP, 0)
-                    .title(Component.translatable("itemGroup.jsontabs." + def.name().toString().replace(':', '.')))
+                    .title(Component.translatable(def.titleKey()))
                     .icon(def.makeIconSupplier())
-                    .displayItems(def.buildDisplayGenerator());
+                    .displayItems(lazyGenerator != null ? lazyGenerator : generator);
 
             if (def.noTitle())
             {
@@ -155,56 +775,320 @@ public final class JsonTabManager
             def.slotColorOpt().ifPresent(tabBuilder::withSlotColor);
             def.tabImageOpt().ifPresent(tabBuilder::withTabsImage);
 
-            addTab(tabBuilder.build(), def.name(), def.after(), def.before());
+            CreativeModeTab tab = tabBuilder.build();
+            builder.builtTabs.put(def.name(), new BuiltTab(def, tab, generator, contentGenerator, lazyGenerator));
+            createdTabs.add(tab);
+            builder.addTab(tab, def.name(), def.after(), def.before());
+            TabMetrics.TAB_BUILD.record(System.nanoTime() - buildStart);
+        }
+
+        // Replace the raw edges with the pre-sorted minimal set from validating the definitions
+        TabSorter.Result order = prepared.order();
+        builder.edges.clear();
+        builder.edges.putAll(order.edges());
+        return builder.build(definitions, order.order());
+    }
+
+    /**
+     * Build the content generators of all tabs with their own contents in include order, so that every tab
+     * references the generators of the tabs it includes. Generators of tabs whose definition and includes didn't
+     * change are reused
+     * @param changedTabs Filled with the tabs whose contents changed because an included tab changed, appeared or
+     *                    disappeared
+     */
+    private static Map<ResourceLocation, TabContentGenerator> buildContentGenerators(
+            List<TabDefinition> definitions, Map<ResourceLocation, BuiltTab> previousTabs, Set<ResourceLocation> changedTabs
+    )
+    {
+        Map<ResourceLocation, TabDefinition> byName = new HashMap<>();
+        definitions.forEach(def -> byName.put(def.name(), def));
+
+        IncludeResolver.Result includes = IncludeResolver.resolve(definitions);
+        includes.logUnresolved();
+
+        Map<ResourceLocation, TabContentGenerator> generators = new LinkedHashMap<>();
+        Set<ResourceLocation> rebuilt = new HashSet<>();
+        for (ResourceLocation name : includes.order())
+        {
+            TabDefinition def = byName.get(name);
+            List<TabContentGenerator.Include> resolved = new ArrayList<>(def.includes().size());
+            boolean includeChanged = false;
+            for (TabInclude include : def.includes())
+            {
+                // Unresolved includes and includes closing a cycle have no generator
+                TabContentGenerator source = generators.get(include.tab());
+                if (source != null)
+                {
+                    resolved.add(new TabContentGenerator.Include(source, include.exclude()));
+                    includeChanged |= rebuilt.contains(include.tab());
+                }
+            }
+
+            BuiltTab previous = previousTabs.get(name);
+            if (!includeChanged && previous != null && previous.contents() != null && previous.definition().equals(def))
+            {
+                // An included tab may have been removed, switched to a vanilla tab or added without this definition changing
+                if (previous.contents().getIncludes().equals(resolved))
+                {
+                    generators.put(name, previous.contents());
+                    continue;
+                }
+                includeChanged = true;
+            }
+
+            generators.put(name, new TabContentGenerator(def, resolved));
+            if (previous == null || includeChanged || !previous.definition().equals(def))
+            {
+                rebuilt.add(name);
+            }
+            if (includeChanged)
+            {
+                changedTabs.add(name);
+            }
         }
+        return generators;
     }
 
-    private static void loadVanillaFallback()
+    private static Layout buildVanillaLayout()
     {
-        addVanillaTab(VanillaTabs.BUILDING_BLOCKS, List.of(), List.of());
-        addVanillaTab(VanillaTabs.COLORED_BLOCKS, List.of(VanillaTabs.BUILDING_BLOCKS), List.of(VanillaTabs.NATURAL_BLOCKS));
-        addVanillaTab(VanillaTabs.NATURAL_BLOCKS, List.of(VanillaTabs.COLORED_BLOCKS), List.of(VanillaTabs.FUNCTIONAL_BLOCKS));
-        addVanillaTab(VanillaTabs.FUNCTIONAL_BLOCKS, List.of(VanillaTabs.NATURAL_BLOCKS), List.of(VanillaTabs.REDSTONE_BLOCKS));
-        addVanillaTab(VanillaTabs.REDSTONE_BLOCKS, List.of(VanillaTabs.FUNCTIONAL_BLOCKS), List.of(VanillaTabs.TOOLS_AND_UTILITIES));
-        addVanillaTab(VanillaTabs.TOOLS_AND_UTILITIES, List.of(VanillaTabs.REDSTONE_BLOCKS), List.of(VanillaTabs.COMBAT));
-        addVanillaTab(VanillaTabs.COMBAT, List.of(VanillaTabs.TOOLS_AND_UTILITIES), List.of(VanillaTabs.FOOD_AND_DRINKS));
-        addVanillaTab(VanillaTabs.FOOD_AND_DRINKS, List.of(VanillaTabs.COMBAT), List.of(VanillaTabs.INGREDIENTS));
-        addVanillaTab(VanillaTabs.INGREDIENTS, List.of(VanillaTabs.FOOD_AND_DRINKS), List.of(VanillaTabs.SPAWN_EGGS));
-        addVanillaTab(VanillaTabs.SPAWN_EGGS, List.of(VanillaTabs.INGREDIENTS), List.of());
+        LayoutBuilder builder = new LayoutBuilder();
+        builder.addVanillaTab(VanillaTabs.BUILDING_BLOCKS, List.of(), List.of());
+        builder.addVanillaTab(VanillaTabs.COLORED_BLOCKS, List.of(VanillaTabs.BUILDING_BLOCKS), List.of(VanillaTabs.NATURAL_BLOCKS));
+        builder.addVanillaTab(VanillaTabs.NATURAL_BLOCKS, List.of(VanillaTabs.COLORED_BLOCKS), List.of(VanillaTabs.FUNCTIONAL_BLOCKS));
+        builder.addVanillaTab(VanillaTabs.FUNCTIONAL_BLOCKS, List.of(VanillaTabs.NATURAL_BLOCKS), List.of(VanillaTabs.REDSTONE_BLOCKS));
+        builder.addVanillaTab(VanillaTabs.REDSTONE_BLOCKS, List.of(VanillaTabs.FUNCTIONAL_BLOCKS), List.of(VanillaTabs.TOOLS_AND_UTILITIES));
+        builder.addVanillaTab(VanillaTabs.TOOLS_AND_UTILITIES, List.of(VanillaTabs.REDSTONE_BLOCKS), List.of(VanillaTabs.COMBAT));
+        builder.addVanillaTab(VanillaTabs.COMBAT, List.of(VanillaTabs.TOOLS_AND_UTILITIES), List.of(VanillaTabs.FOOD_AND_DRINKS));
+        builder.addVanillaTab(VanillaTabs.FOOD_AND_DRINKS, List.of(VanillaTabs.COMBAT), List.of(VanillaTabs.INGREDIENTS));
+        builder.addVanillaTab(VanillaTabs.INGREDIENTS, List.of(VanillaTabs.FOOD_AND_DRINKS), List.of(VanillaTabs.SPAWN_EGGS));
+        builder.addVanillaTab(VanillaTabs.SPAWN_EGGS, List.of(VanillaTabs.INGREDIENTS), List.of());
+        return builder.build(List.of(), List.of());
     }
 
-    private static void addVanillaTab(ResourceLocation name, List<ResourceLocation> afterEntries, List<ResourceLocation> beforeEntries)
+    public static Multimap<ResourceLocation, ResourceLocation> getEdges()
     {
-        addTab(VanillaTabs.TABS.get(name), name, afterEntries, beforeEntries);
+        return layout.edges();
+    }
+
+    public static Map<ResourceLocation, CreativeModeTab> getTabs()
+    {
+        return layout.tabs();
+    }
+
+    /**
+     * {@return the tabs built from definitions in their sorted order, empty if the vanilla fallback is in use}
+     */
+    public static List<ResourceLocation> getTabOrder()
+    {
+        return layout.order();
+    }
+
+    /**
+     * {@return the definitions the current tabs were built from, either the local or a remote layout, empty if the
+     * vanilla fallback is in use}. May be called from any thread
+     */
+    public static List<TabDefinition> getBuiltDefinitions()
+    {
+        return layout.definitions();
     }
 
     /**
-     * Add a tab including its sorting edges
-     * @param tab The tab to add
-     * @param name The name of the tab being added
-     * @param afterEntries The tabs by name this tab should be added after
-     * @param beforeEntries The tabs by name this tab should be added before
+     * Activate the given tab if it is a lazy tab which wasn't activated yet. Must be called on the main thread
+     * @return True if the contents of the tab need to be built again
      */
-    private static void addTab(CreativeModeTab tab, ResourceLocation name, List<ResourceLocation> afterEntries, List<ResourceLocation> beforeEntries)
+    public static boolean activateLazyTab(CreativeModeTab tab)
     {
-        TABS.put(name, tab);
-        for (ResourceLocation after : afterEntries)
+        Layout current = layout;
+        ResourceLocation name = current.tabs().inverse().get(tab);
+        BuiltTab builtTab = name != null ? current.builtTabs().get(name) : null;
+        return builtTab != null && builtTab.lazy() != null && builtTab.lazy().activate();
+    }
+
+    /**
+     * Activate all lazy tabs which weren't activated yet. Must be called on the main thread
+     * @return The tabs whose contents need to be built again
+     */
+    public static List<CreativeModeTab> activateLazyTabs()
+    {
+        List<CreativeModeTab> activated = new ArrayList<>();
+        for (BuiltTab builtTab : layout.builtTabs().values())
         {
-            EDGES.put(after, name);
+            if (builtTab.lazy() != null && builtTab.lazy().activate())
+            {
+                activated.add(builtTab.tab());
+            }
         }
-        for (ResourceLocation before : beforeEntries)
+        return activated;
+    }
+
+    /**
+     * {@return the caching display generators of all tabs built from definitions, used to inspect cache statistics}
+     */
+    public static List<CachingDisplayGenerator> getDisplayGenerators()
+    {
+        return layout.builtTabs()
+                .values()
+                .stream()
+                .map(BuiltTab::generator)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    private static long toMillis(long nanos)
+    {
+        return nanos / 1_000_000L;
+    }
+
+
+
+    /**
+     * @param profile The profile the definitions were read from
+     * @param result The reloaded definitions
+     * @param order The sorted order of the reloaded definitions
+     */
+    public record Reload(String profile, TabDefinitionLoader.Result result, TabSorter.Result order) { }
+
+    /**
+     * @param name The name of the profile
+     * @param active Whether the profile is the active profile
+     * @param definitions The number of definitions of the profile, 0 if it isn't loaded
+     * @param compiled Whether the profile is prepared or compiled
+     * @param memory The estimated number of bytes retained by the resolved contents of the profile
+     */
+    public record ProfileStatus(String name, boolean active, int definitions, boolean compiled, long memory) { }
+
+    /**
+     * @param results The definitions of every profile read in the background
+     * @param duration The time spent reading them in nanoseconds
+     */
+    private record Preload(Map<String, TabDefinitionLoader.Result> results, long duration) { }
+
+    /**
+     * @param name The name of the profile
+     * @param files The decoded files by cache key, used as the base for the next reload
+     * @param definitions The definitions of the profile
+     * @param prepared The content generators prepared from the definitions, null if it wasn't prepared yet
+     * @param layout The layout compiled from the definitions, null if its tabs weren't built yet
+     */
+    private record Profile(
+            String name,
+            Map<String, TabDefinitionCache.CachedFile> files,
+            List<TabDefinition> definitions,
+            Prepared prepared,
+            Layout layout
+    ) { }
+
+    /**
+     * Everything of a layout which doesn't create tabs and may therefore be built off the main thread
+     * @param order The sorted order and edges of the definitions
+     * @param generators The content generators of all tabs with their own contents by name, the included tabs' first
+     * @param changedTabs The tabs whose contents changed because an included tab changed
+     */
+    private record Prepared(TabSorter.Result order, Map<ResourceLocation, TabContentGenerator> generators, Set<ResourceLocation> changedTabs)
+    {
+        /**
+         * Resolve the contents of all tabs for the current tags, they are otherwise resolved when the contents of
+         * the tabs are first built
+         */
+        void resolveContents()
+        {
+            // Building the plan resolves the generator's own contents and those of all included tabs
+            generators.values().forEach(TabContentGenerator::getResolvedItems);
+        }
+
+        long estimateMemory()
         {
-            EDGES.put(name, before);
+            return generators.values().stream().mapToLong(TabContentGenerator::estimateMemory).sum();
         }
     }
 
-    public static Multimap<ResourceLocation, ResourceLocation> getEdges()
+    /**
+     * Immutable snapshot of the tabs built from a set of definitions. Swapping the current layout is all that is
+     * needed to switch between layouts
+     * @param definitions The definitions the layout was built from, empty for the vanilla fallback
+     * @param tabs The tabs by name
+     * @param edges The sorting edges in sort order
+     * @param order The tabs built from definitions in their sorted order
+     * @param builtTabs The built tabs by name
+     */
+    private record Layout(
+            List<TabDefinition> definitions,
+            ImmutableBiMap<ResourceLocation, CreativeModeTab> tabs,
+            ImmutableMultimap<ResourceLocation, ResourceLocation> edges,
+            List<ResourceLocation> order,
+            ImmutableMap<ResourceLocation, BuiltTab> builtTabs
+    )
     {
-        return EDGES;
+        static final Layout EMPTY = new Layout(List.of(), ImmutableBiMap.of(), ImmutableMultimap.of(), List.of(), ImmutableMap.of());
+
+        /**
+         * {@return the tabs built from definitions, the tabs whose contents need to be built when the layout is swapped in}
+         */
+        List<CreativeModeTab> getDefinitionTabs()
+        {
+            return builtTabs.values()
+                    .stream()
+                    .filter(builtTab -> builtTab.generator() != null)
+                    .map(BuiltTab::tab)
+                    .toList();
+        }
     }
 
-    public static Map<ResourceLocation, CreativeModeTab> getTabs()
+    private static final class LayoutBuilder
     {
-        return TABS;
+        private final BiMap<ResourceLocation, CreativeModeTab> tabs = HashBiMap.create();
+        private final Multimap<ResourceLocation, ResourceLocation> edges = LinkedHashMultimap.create();
+        private final Map<ResourceLocation, BuiltTab> builtTabs = new LinkedHashMap<>();
+
+        private void addVanillaTab(ResourceLocation name, List<ResourceLocation> afterEntries, List<ResourceLocation> beforeEntries)
+        {
+            addTab(VanillaTabs.TABS.get(name), name, afterEntries, beforeEntries);
+        }
+
+        /**
+         * Add a tab including its sorting edges
+         * @param tab The tab to add
+         * @param name The name of the tab being added
+         * @param afterEntries The tabs by name this tab should be added after
+         * @param beforeEntries The tabs by name this tab should be added before
+         */
+        private void addTab(CreativeModeTab tab, ResourceLocation name, List<ResourceLocation> afterEntries, List<ResourceLocation> beforeEntries)
+        {
+            tabs.put(name, tab);
+            for (ResourceLocation after : afterEntries)
+            {
+                edges.put(after, name);
+            }
+            for (ResourceLocation before : beforeEntries)
+            {
+                edges.put(name, before);
+            }
+        }
+
+        private Layout build(List<TabDefinition> definitions, List<ResourceLocation> order)
+        {
+            return new Layout(
+                    definitions,
+                    ImmutableBiMap.copyOf(tabs),
+                    ImmutableMultimap.copyOf(edges),
+                    List.copyOf(order),
+                    ImmutableMap.copyOf(builtTabs)
+            );
+        }
     }
+
+    /**
+     * @param definition The definition the tab was built from
+     * @param tab The tab instance
+     * @param generator The generator of the tab, null if the definition uses a vanilla tab
+     * @param contents The generator of the tab's contents, null if the tab is a vanilla, catch-all or empty tab
+     * @param lazy The generator deferring the contents until the tab is used, null if the tab isn't lazy
+     */
+    private record BuiltTab(
+            TabDefinition definition,
+            CreativeModeTab tab,
+            CachingDisplayGenerator generator,
+            TabContentGenerator contents,
+            LazyDisplayGenerator lazy
+    ) { }
 }
@@ -0,0 +1,60 @@
+package xfacthd.jsontabs.tabs;
+
+import net.minecraft.world.item.CreativeModeTab;
+import net.minecraft.world.item.ItemStack;
+
+import java.util.function.Supplier;
+
+/**
+ * Display generator of tabs marked as lazy. Until the tab is activated, only its icon is emitted as a placeholder,
+ * visible in the tab itself but not in the search tab, so neither the contents nor their search index are built.
+ * Activation happens when the tab is first selected or when the search tab is opened, after which the wrapped
+ * generator is used
+ */
+public final class LazyDisplayGenerator implements CreativeModeTab.DisplayItemsGenerator
+{
+    private final CreativeModeTab.DisplayItemsGenerator wrapped;
+    private final Supplier<ItemStack> placeholder;
+    private volatile boolean active = false;
+
+    public LazyDisplayGenerator(CreativeModeTab.DisplayItemsGenerator wrapped, Supplier<ItemStack> placeholder)
+    {
+        this.wrapped = wrapped;
+        this.placeholder = placeholder;
+    }
+
+    @Override
+    public void accept(CreativeModeTab.ItemDisplayParameters params, CreativeModeTab.Output output)
+    {
+        if (active)
+        {
+            wrapped.accept(params, output);
+            return;
+        }
+
+        ItemStack stack = placeholder.get();
+        if (!stack.isEmpty())
+        {
+            output.accept(stack, CreativeModeTab.TabVisibility.PARENT_TAB_ONLY);
+        }
+    }
+
+    /**
+     * Switch to producing the full contents
+     * @return True if the generator wasn't active yet and the contents of its tab need to be built again
+     */
+    public boolean activate()
+    {
+        if (active)
+        {
+            return false;
+        }
+        active = true;
+        return true;
+    }
+
+    public boolean isActive()
+    {
+        return active;
+    }
+}
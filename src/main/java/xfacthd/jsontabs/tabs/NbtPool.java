@@ -0,0 +1,236 @@
+package xfacthd.jsontabs.tabs;
+
+import com.google.common.io.CountingOutputStream;
+import com.google.gson.JsonObject;
+import com.mojang.brigadier.exceptions.CommandSyntaxException;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
+import net.minecraft.nbt.*;
+import net.minecraft.resources.ResourceLocation;
+import xfacthd.jsontabs.JsonTabs;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Deduplicated pool of the tags attached to tab entries, shared between all tabs. Every distinct SNBT string is
+ * parsed once and structurally equal tags share a single index. Pooled tags must never be modified, stacks handed
+ * out must receive a copy. Invalid SNBT is reported once, when it is first encountered
+ */
+public final class NbtPool
+{
+    public static final int NO_TAG = -1;
+    private static volatile NbtPool current = new NbtPool();
+
+    private final Map<String, Integer> indexBySnbt = new ConcurrentHashMap<>();
+    private final Map<String, CommandSyntaxException> invalid = new ConcurrentHashMap<>();
+    private final Map<CompoundTag, Integer> indexByTag = new HashMap<>();
+    // Grown geometrically, only the first tagCount slots are used
+    private volatile CompoundTag[] tagArray = new CompoundTag[16];
+    private int tagCount = 0;
+    private final IntList tagSizes = new IntArrayList();
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder bytesSaved = new LongAdder();
+
+    /**
+     * {@return the pool used by the currently loaded definitions}
+     */
+    public static NbtPool get()
+    {
+        return current;
+    }
+
+    /**
+     * Replace the current pool with an empty one, must be called before loading a new set of definitions. Tabs
+     * built from the previous definitions keep using the previous pool
+     */
+    public static void reset()
+    {
+        current = new NbtPool();
+    }
+
+    /**
+     * Replace the current pool with the given one, used to keep tests from interning into the pool of the loaded
+     * definitions
+     * @return The pool which was current before
+     */
+    public static NbtPool install(NbtPool pool)
+    {
+        NbtPool previous = current;
+        current = pool;
+        return previous;
+    }
+
+    /**
+     * Parse the given SNBT and add it to the pool if it isn't known yet
+     * @return The index of the tag or {@link #NO_TAG} if the SNBT is empty or invalid
+     */
+    public int intern(String snbt)
+    {
+        return intern(snbt, null, null);
+    }
+
+    /**
+     * Parse the given SNBT and add it to the pool if it isn't known yet
+     * @param item The item of the entry the SNBT belongs to, named in the error if the SNBT is invalid
+     * @param tabName The tab of the entry the SNBT belongs to, named in the error if the SNBT is invalid
+     * @return The index of the tag or {@link #NO_TAG} if the SNBT is empty or invalid
+     */
+    public int intern(String snbt, ItemSelector item, ResourceLocation tabName)
+    {
+        if (snbt.isEmpty())
+        {
+            return NO_TAG;
+        }
+
+        lookups.increment();
+        if (invalid.containsKey(snbt))
+        {
+            hits.increment();
+            return NO_TAG;
+        }
+
+        Integer index = indexBySnbt.get(snbt);
+        if (index != null)
+        {
+            hits.increment();
+            bytesSaved.add(getSize(index));
+            return index;
+        }
+
+        CompoundTag tag;
+        long start = System.nanoTime();
+        try
+        {
+            tag = TagParser.parseTag(snbt);
+        }
+        catch (CommandSyntaxException e)
+        {
+            if (invalid.putIfAbsent(snbt, e) == null)
+            {
+                JsonTabs.LOGGER.error(
+                        "Found invalid NBT data '{}' on item '{}' in tab '{}', tag will not be attached to any entry using it",
+                        snbt, item, tabName, e
+                );
+            }
+            return NO_TAG;
+        }
+        finally
+        {
+            TabMetrics.NBT_PARSE.record(System.nanoTime() - start);
+        }
+
+        synchronized (indexByTag)
+        {
+            index = indexByTag.get(tag);
+            if (index == null)
+            {
+                index = tagCount++;
+                CompoundTag[] array = tagArray;
+                if (index == array.length)
+                {
+                    array = Arrays.copyOf(array, array.length * 2);
+                }
+                array[index] = tag;
+                // Written again after storing the tag to publish it to readers of the array
+                tagArray = array;
+                tagSizes.add(measure(tag));
+                indexByTag.put(tag, index);
+            }
+            else
+            {
+                // A different string for an already known tag, the parsed copy is dropped
+                bytesSaved.add(tagSizes.getInt(index));
+            }
+        }
+        indexBySnbt.put(snbt, index);
+        return index;
+    }
+
+    /**
+     * {@return the parse error of the given SNBT or null if it is valid or wasn't interned yet}
+     */
+    public CommandSyntaxException getError(String snbt)
+    {
+        return invalid.get(snbt);
+    }
+
+    /**
+     * {@return the pooled tag with the given index, must not be modified}
+     */
+    public CompoundTag get(int index)
+    {
+        return tagArray[index];
+    }
+
+    public Stats getStats()
+    {
+        int distinctTags;
+        synchronized (indexByTag)
+        {
+            distinctTags = tagCount;
+        }
+        return new Stats(lookups.sum(), hits.sum(), indexBySnbt.size(), distinctTags, invalid.size(), bytesSaved.sum());
+    }
+
+    private int getSize(int index)
+    {
+        synchronized (indexByTag)
+        {
+            return tagSizes.getInt(index);
+        }
+    }
+
+    /**
+     * {@return the serialized size of the given tag, used as an estimate of the memory held by a tag instance}
+     */
+    private static int measure(CompoundTag tag)
+    {
+        try
+        {
+            CountingOutputStream stream = new CountingOutputStream(OutputStream.nullOutputStream());
+            NbtIo.write(tag, new DataOutputStream(stream));
+            return (int) stream.getCount();
+        }
+        catch (IOException e)
+        {
+            return 0;
+        }
+    }
+
+
+
+    /**
+     * @param lookups The amount of non-empty SNBT strings interned
+     * @param hits The amount of lookups answered without parsing
+     * @param distinctSnbt The amount of distinct valid SNBT strings
+     * @param distinctTags The amount of distinct tags after structural deduplication
+     * @param invalid The amount of distinct invalid SNBT strings
+     * @param bytesSaved The estimated amount of bytes not allocated thanks to sharing tags
+     */
+    public record Stats(long lookups, long hits, int distinctSnbt, int distinctTags, int invalid, long bytesSaved)
+    {
+        public double hitRate()
+        {
+            return lookups == 0 ? 0D : (double) hits / lookups;
+        }
+
+        public JsonObject toJson()
+        {
+            JsonObject json = new JsonObject();
+            json.addProperty("lookups", lookups);
+            json.addProperty("hits", hits);
+            json.addProperty("hit_rate", hitRate());
+            json.addProperty("distinct_snbt", distinctSnbt);
+            json.addProperty("distinct_tags", distinctTags);
+            json.addProperty("invalid", invalid);
+            json.addProperty("bytes_saved", bytesSaved);
+            return json;
+        }
+    }
+}
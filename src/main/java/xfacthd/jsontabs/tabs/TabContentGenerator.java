@@ -0,0 +1,471 @@
+package xfacthd.jsontabs.tabs;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.world.flag.FeatureFlagSet;
+import net.minecraft.world.item.*;
+import xfacthd.jsontabs.JsonTabs;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Display generator of a tab built from a {@link TabDefinition}. Entries are resolved on first use, as the
+ * generator is built before all registries are guaranteed to be filled. Contents depending on tags are resolved
+ * again after the tags were reloaded, all contents are resolved again after Forge remapped the item IDs.
+ * <p>
+ * Resolved contents are stored as two packed arrays, the registry IDs of the items and the indices of their tags
+ * in the {@link NbtPool}, so that no objects are retained per entry and emitting the contents doesn't allocate
+ * anything besides the emitted stacks.
+ * <p>
+ * Included tabs are not copied: the contents of a tab are emitted as a list of segments, its own resolved contents
+ * followed by the resolved contents of every transitively included tab, each referenced from the generator of the
+ * included tab. Per segment only the positions to skip, because they are excluded or were already emitted by an
+ * earlier segment, are stored.
+ * <p>
+ * Conditions on mods and config toggles are evaluated when the contents are resolved. Entries only differing in the
+ * feature flags they require are stored in runs of consecutive positions sharing the same set of required flags, so
+ * that the flags are checked once per distinct set and disabled runs are skipped as a whole.
+ * <p>
+ * Resolving the contents again doesn't repeat any work done for the same definition: invalid entries and
+ * exclusions are only reported once and every entry's tag is only interned once per {@link NbtPool}
+ */
+final class TabContentGenerator implements CreativeModeTab.DisplayItemsGenerator
+{
+    private static final int NOT_INTERNED = Integer.MIN_VALUE;
+
+    private final TabDefinition definition;
+    private final List<Include> includes;
+    private final boolean dependsOnTags;
+    // Exclusions are resolved while building the plan of any tab including this one, not only under this generator's lock
+    private final Set<Object> reported = ConcurrentHashMap.newKeySet();
+    private volatile Resolved resolved = null;
+    private volatile Plan plan = null;
+    // Guarded by this generator's lock
+    private NbtPool entryTagPool = null;
+    private int[] entryTags = null;
+
+    /**
+     * @param definition The definition to generate the contents of
+     * @param includes The generators of the tabs included by the definition, already built
+     */
+    TabContentGenerator(TabDefinition definition, List<Include> includes)
+    {
+        this.definition = definition;
+        this.includes = List.copyOf(includes);
+        this.dependsOnTags = definition.contents()
+                .stream()
+                .anyMatch(entry -> entry.name().type() == ItemSelector.Type.TAG);
+    }
+
+    @Override
+    public void accept(CreativeModeTab.ItemDisplayParameters params, CreativeModeTab.Output output)
+    {
+        Plan plan = getPlan();
+        FeatureFlagSet features = params.enabledFeatures();
+        for (int seg = 0; seg < plan.segments().length; seg++)
+        {
+            Resolved res = plan.segments()[seg];
+            BitSet skipped = plan.skipped()[seg];
+            int[] items = res.items();
+            int[] tags = res.tags();
+            long enabled = res.computeEnabled(features);
+            int start = 0;
+            for (int run = 0; run < res.runEnds().length; run++)
+            {
+                int end = res.runEnds()[run];
+                if (res.isEnabled(run, enabled, features))
+                {
+                    for (int i = start; i < end; i++)
+                    {
+                        if (skipped != null && skipped.get(i))
+                        {
+                            continue;
+                        }
+
+                        ItemStack stack = new ItemStack(BuiltInRegistries.ITEM.byId(items[i]));
+                        if (tags[i] != NbtPool.NO_TAG)
+                        {
+                            stack.setTag(res.pool().get(tags[i]).copy());
+                        }
+                        output.accept(stack);
+                    }
+                }
+                start = end;
+            }
+        }
+    }
+
+    /**
+     * {@return the generators of the included tabs this generator was built with}
+     */
+    List<Include> getIncludes()
+    {
+        return includes;
+    }
+
+    /**
+     * {@return the registry IDs of all items this tab contains}
+     */
+    BitSet getResolvedItems()
+    {
+        return getPlan().itemSet();
+    }
+
+    /**
+     * {@return an estimate of the bytes retained by the resolved contents and the plan of this tab, 0 if they
+     * weren't resolved yet}. The segments of included tabs are accounted to the generators of those tabs
+     */
+    long estimateMemory()
+    {
+        long bytes = 0L;
+        Resolved res = resolved;
+        if (res != null)
+        {
+            bytes += res.estimateMemory();
+        }
+
+        Plan current = plan;
+        if (current != null && current.segments().length > 1)
+        {
+            for (BitSet skipped : current.skipped())
+            {
+                bytes += skipped != null ? sizeOf(skipped) : 0L;
+            }
+            bytes += sizeOf(current.itemSet());
+        }
+        return bytes;
+    }
+
+    private Plan getPlan()
+    {
+        Plan current = plan;
+        int generation = ItemIndex.getTagGeneration();
+        int idGeneration = ItemIndex.getIdGeneration();
+        // Exclusions and included contents may depend on tags, the plan is therefore always built again after a tag reload
+        if (current == null || current.tagGeneration() != generation || current.idGeneration() != idGeneration)
+        {
+            synchronized (this)
+            {
+                current = plan;
+                if (current == null || current.tagGeneration() != generation || current.idGeneration() != idGeneration)
+                {
+                    current = buildPlan(generation, idGeneration);
+                    plan = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Collect the segments of this tab, its own contents followed by the contents of all transitively included
+     * tabs in order of their first inclusion, and mark the positions which are excluded or duplicate the
+     * contents of an earlier segment
+     */
+    private Plan buildPlan(int tagGeneration, int idGeneration)
+    {
+        Resolved own = getResolved();
+        if (includes.isEmpty())
+        {
+            return new Plan(tagGeneration, idGeneration, new Resolved[] { own }, new BitSet[1], own.itemSet());
+        }
+
+        Map<TabContentGenerator, BitSet> sources = new LinkedHashMap<>();
+        sources.put(this, new BitSet());
+        collectIncludes(new BitSet(), sources);
+
+        Resolved[] segments = new Resolved[sources.size()];
+        BitSet[] skipped = new BitSet[sources.size()];
+        BitSet itemSet = new BitSet(BuiltInRegistries.ITEM.size());
+        LongOpenHashSet seen = new LongOpenHashSet(own.items().length);
+        int seg = 0;
+        for (Map.Entry<TabContentGenerator, BitSet> source : sources.entrySet())
+        {
+            Resolved res = source.getKey().getResolved();
+            BitSet excluded = source.getValue();
+            BitSet skip = null;
+            for (int i = 0; i < res.items().length; i++)
+            {
+                int id = res.items()[i];
+                if (excluded.get(id) || !seen.add(((long) id << 32) | (res.tags()[i] & 0xFFFFFFFFL)))
+                {
+                    if (skip == null)
+                    {
+                        skip = new BitSet(res.items().length);
+                    }
+                    skip.set(i);
+                }
+                else
+                {
+                    itemSet.set(id);
+                }
+            }
+            segments[seg] = res;
+            skipped[seg] = skip;
+            seg++;
+        }
+        return new Plan(tagGeneration, idGeneration, segments, skipped, itemSet);
+    }
+
+    /**
+     * Collect the generators of all tabs included by this tab with the items excluded from each of them. A tab
+     * reached on several paths only has the items excluded on all of them excluded
+     * @param excludedOnPath The items excluded by the includes leading to this tab
+     * @param sources The collected generators and their excluded items
+     */
+    private void collectIncludes(BitSet excludedOnPath, Map<TabContentGenerator, BitSet> sources)
+    {
+        for (Include include : includes)
+        {
+            BitSet excluded = (BitSet) excludedOnPath.clone();
+            excluded.or(include.resolveExcluded(definition.name(), reported));
+
+            BitSet previous = sources.get(include.source());
+            if (previous != null)
+            {
+                BitSet narrowed = (BitSet) previous.clone();
+                narrowed.and(excluded);
+                if (narrowed.equals(previous))
+                {
+                    // Everything visible on this path is already visible on an earlier one
+                    continue;
+                }
+                previous.and(excluded);
+            }
+            else
+            {
+                sources.put(include.source(), excluded);
+            }
+            include.source().collectIncludes(excluded, sources);
+        }
+    }
+
+    private Resolved getResolved()
+    {
+        Resolved res = resolved;
+        int generation = ItemIndex.getTagGeneration();
+        int idGeneration = ItemIndex.getIdGeneration();
+        // Registry IDs change when Forge remaps the items, the contents are therefore always resolved again after a remap
+        if (res == null || res.idGeneration() != idGeneration || (dependsOnTags && res.tagGeneration() != generation))
+        {
+            synchronized (this)
+            {
+                res = resolved;
+                if (res == null || res.idGeneration() != idGeneration || (dependsOnTags && res.tagGeneration() != generation))
+                {
+                    res = resolveContents(generation, idGeneration);
+                    resolved = res;
+                }
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Resolve all entries into item IDs and tag indices, invalid entries and entries whose mod or toggle conditions
+     * aren't met are dropped. Item and tag combinations matched by more than one entry are only added once
+     */
+    private Resolved resolveContents(int tagGeneration, int idGeneration)
+    {
+        NbtPool pool = NbtPool.get();
+        IntArrayList items = new IntArrayList(definition.contents().size());
+        IntArrayList tags = new IntArrayList(definition.contents().size());
+        LongOpenHashSet seen = new LongOpenHashSet(definition.contents().size());
+        BitSet itemSet = new BitSet(BuiltInRegistries.ITEM.size());
+        IntArrayList runEnds = new IntArrayList();
+        IntArrayList runPartitions = new IntArrayList();
+        List<FeatureFlagSet> partitions = new ArrayList<>();
+        if (entryTagPool != pool)
+        {
+            entryTagPool = pool;
+            entryTags = new int[definition.contents().size()];
+            Arrays.fill(entryTags, NOT_INTERNED);
+        }
+
+        for (int idx = 0; idx < definition.contents().size(); idx++)
+        {
+            TabEntry entry = definition.contents().get(idx);
+            if (!entry.conditions().testStatic())
+            {
+                continue;
+            }
+
+            List<Item> matches = ItemIndex.get().expand(entry.name());
+            if (matches.isEmpty())
+            {
+                if (!reported.add(entry))
+                {
+                    continue;
+                }
+                if (entry.name().isSingleItem())
+                {
+                    JsonTabs.LOGGER.warn("Found invalid entry '{}' in tab definition '{}', ignoring", entry.name(), definition.name());
+                }
+                else
+                {
+                    JsonTabs.LOGGER.warn("Entry '{}' in tab definition '{}' doesn't match any items", entry.name(), definition.name());
+                }
+                continue;
+            }
+
+            if (entryTags[idx] == NOT_INTERNED)
+            {
+                entryTags[idx] = entry.internTag(pool, definition.name());
+            }
+            int tag = entryTags[idx];
+            FeatureFlagSet entryFeatures = entry.conditions().resolveFeatures(definition.name());
+            for (Item item : matches)
+            {
+                int id = BuiltInRegistries.ITEM.getId(item);
+                if (seen.add(((long) id << 32) | (tag & 0xFFFFFFFFL)))
+                {
+                    FeatureFlagSet required = item.requiredFeatures().join(entryFeatures);
+                    int partition = partitions.indexOf(required);
+                    if (partition == -1)
+                    {
+                        partition = partitions.size();
+                        partitions.add(required);
+                    }
+                    if (runPartitions.isEmpty() || runPartitions.getInt(runPartitions.size() - 1) != partition)
+                    {
+                        runPartitions.add(partition);
+                        runEnds.add(items.size());
+                    }
+                    runEnds.set(runEnds.size() - 1, items.size() + 1);
+
+                    items.add(id);
+                    tags.add(tag);
+                    itemSet.set(id);
+                }
+            }
+        }
+        return new Resolved(
+                tagGeneration,
+                idGeneration,
+                items.toIntArray(),
+                tags.toIntArray(),
+                pool,
+                itemSet,
+                runEnds.toIntArray(),
+                runPartitions.toIntArray(),
+                partitions.toArray(FeatureFlagSet[]::new)
+        );
+    }
+
+
+
+    private static long sizeOf(BitSet set)
+    {
+        return set.size() / Byte.SIZE;
+    }
+
+
+
+    /**
+     * Packed resolved contents, 8 bytes per entry plus a registry-sized bitset instead of a template stack of about
+     * 80 bytes and a tag copy of several hundred bytes per entry. These sizes are estimates derived from the object
+     * layout of a 64-bit JVM with compressed oops, not measurements, the retained heap of whole layouts is measured
+     * by the performance GameTests
+     * @param tagGeneration The tag generation the contents were resolved in
+     * @param idGeneration The registry ID generation the contents were resolved in
+     * @param items The registry IDs of the contained items
+     * @param tags The pool index of the tag of each item, {@link NbtPool#NO_TAG} if the item has no tag
+     * @param pool The pool the tag indices refer to
+     * @param itemSet The registry IDs of the contained items as a set
+     * @param runEnds The exclusive end position of each run of items requiring the same feature flags
+     * @param runPartitions The index of the feature flags required by each run in the partitions
+     * @param partitions The distinct sets of feature flags required by the items
+     */
+    private record Resolved(
+            int tagGeneration,
+            int idGeneration,
+            int[] items,
+            int[] tags,
+            NbtPool pool,
+            BitSet itemSet,
+            int[] runEnds,
+            int[] runPartitions,
+            FeatureFlagSet[] partitions
+    )
+    {
+        /**
+         * {@return a mask with the bit of every partition enabled by the given feature flags set, only covers the
+         * first 64 partitions}
+         */
+        long computeEnabled(FeatureFlagSet features)
+        {
+            long enabled = 0L;
+            for (int p = 0; p < Math.min(partitions.length, Long.SIZE); p++)
+            {
+                if (partitions[p].isSubsetOf(features))
+                {
+                    enabled |= 1L << p;
+                }
+            }
+            return enabled;
+        }
+
+        long estimateMemory()
+        {
+            long arrays = (long) items.length + tags.length + runEnds.length + runPartitions.length;
+            return arrays * Integer.BYTES + sizeOf(itemSet);
+        }
+
+        boolean isEnabled(int run, long enabled, FeatureFlagSet features)
+        {
+            int partition = runPartitions[run];
+            if (partition < Long.SIZE)
+            {
+                return (enabled & (1L << partition)) != 0L;
+            }
+            return partitions[partition].isSubsetOf(features);
+        }
+    }
+
+    /**
+     * @param tagGeneration The tag generation the plan was built in
+     * @param idGeneration The registry ID generation the plan was built in
+     * @param segments The resolved contents of this tab and all included tabs, referenced from their generators
+     * @param skipped The positions to skip per segment, null if the whole segment is emitted
+     * @param itemSet The registry IDs of all emitted items as a set
+     */
+    private record Plan(int tagGeneration, int idGeneration, Resolved[] segments, BitSet[] skipped, BitSet itemSet) { }
+
+    /**
+     * @param source The generator of the included tab
+     * @param exclude The items, tags or patterns to leave out of the included contents
+     */
+    record Include(TabContentGenerator source, List<ItemSelector> exclude)
+    {
+        /**
+         * @param reported The problems already reported for the including tab, exclusions matching nothing are
+         *                 only reported once
+         */
+        BitSet resolveExcluded(ResourceLocation tabName, Set<Object> reported)
+        {
+            BitSet excluded = new BitSet();
+            for (ItemSelector selector : exclude)
+            {
+                List<Item> matches = ItemIndex.get().expand(selector);
+                if (matches.isEmpty() && reported.add(new ReportedExclusion(source, selector)))
+                {
+                    JsonTabs.LOGGER.warn(
+                            "Exclusion '{}' of included tab '{}' in tab definition '{}' doesn't match any items",
+                            selector, source.definition.name(), tabName
+                    );
+                }
+                matches.forEach(item -> excluded.set(BuiltInRegistries.ITEM.getId(item)));
+            }
+            return excluded;
+        }
+    }
+
+    /**
+     * @param source The generator of the included tab the exclusion applies to
+     * @param selector The exclusion which doesn't match any items
+     */
+    private record ReportedExclusion(TabContentGenerator source, ItemSelector selector) { }
+}
@@ -1,11 +1,17 @@
 package xfacthd.jsontabs.tabs;
 
+import com.mojang.datafixers.util.Either;
+import com.mojang.serialization.Codec;
+import com.mojang.serialization.DataResult;
+import com.mojang.serialization.MapCodec;
+import com.mojang.serialization.codecs.RecordCodecBuilder;
 import net.minecraft.resources.ResourceLocation;
+import net.minecraft.util.ExtraCodecs;
 import net.minecraft.world.item.*;
 import xfacthd.jsontabs.JsonTabs;
+import xfacthd.jsontabs.util.Utils;
 
-import java.util.List;
-import java.util.Optional;
+import java.util.*;
 import java.util.function.Supplier;
 
 public record TabDefinition(
@@ -22,9 +28,79 @@ public record TabDefinition(
         Optional<Integer> searchBarWidthOpt,
         Optional<Integer> slotColorOpt,
         Optional<ResourceLocation> tabImageOpt,
-        List<TabEntry> contents
+        List<TabEntry> contents,
+        Optional<Boolean> catchAllOpt,
+        Optional<CatchAllOrder> catchAllOrderOpt,
+        Optional<Boolean> lazyOpt,
+        Optional<Map<String, String>> titleOpt,
+        Optional<List<TabInclude>> includeOpt
 )
 {
+    /**
+     * The language a title given as a plain string applies to
+     */
+    public static final String DEFAULT_LANGUAGE = "en_us";
+    private static final Codec<Map<String, String>> TITLE_CODEC = Codec.either(
+            Codec.STRING,
+            Codec.unboundedMap(Codec.STRING, Codec.STRING)
+    ).xmap(
+            either -> either.map(title -> Map.of(DEFAULT_LANGUAGE, title), Map::copyOf),
+            titles -> titles.size() == 1 && titles.containsKey(DEFAULT_LANGUAGE) ? Either.left(titles.get(DEFAULT_LANGUAGE)) : Either.right(titles)
+    );
+    // RecordCodecBuilder is limited to 16 fields, the appearance options are therefore decoded as a nested map codec
+    private static final MapCodec<Appearance> APPEARANCE_CODEC = RecordCodecBuilder.mapCodec(instance -> instance.group(
+            Codec.BOOL.optionalFieldOf("no_title").forGetter(Appearance::noTitleOpt),
+            Codec.BOOL.optionalFieldOf("no_scrollbar").forGetter(Appearance::noScrollOpt),
+            ResourceLocation.CODEC.optionalFieldOf("background").forGetter(Appearance::backgroundOpt),
+            Utils.FLEXIBLE_INT_CODEC.optionalFieldOf("label_color").forGetter(Appearance::labelColorOpt),
+            Codec.BOOL.optionalFieldOf("search_bar").forGetter(Appearance::searchBarOpt),
+            Codec.INT.optionalFieldOf("search_bar_width").forGetter(Appearance::searchBarWidthOpt),
+            Utils.FLEXIBLE_INT_CODEC.optionalFieldOf("slot_color").forGetter(Appearance::slotColorOpt),
+            ResourceLocation.CODEC.optionalFieldOf("tab_image").forGetter(Appearance::tabImageOpt),
+            TITLE_CODEC.optionalFieldOf("title").forGetter(Appearance::titleOpt)
+    ).apply(instance, Appearance::new));
+    public static final Codec<TabDefinition> CODEC = RecordCodecBuilder.create(instance -> instance.group(
+            ResourceLocation.CODEC.fieldOf("name").forGetter(TabDefinition::name),
+            Codec.BOOL.optionalFieldOf("use_vanilla").forGetter(TabDefinition::useVanillaOpt),
+            ResourceLocation.CODEC.listOf().fieldOf("after").forGetter(TabDefinition::after),
+            ResourceLocation.CODEC.listOf().fieldOf("before").forGetter(TabDefinition::before),
+            new ExtraCodecs.EitherCodec<>(
+                    TabEntry.CODEC_SIMPLE,
+                    TabEntry.CODEC_DATA
+            ).fieldOf("icon").xmap(TabEntry::crossMapTo, TabEntry::crossMapFrom)
+                    .flatXmap(TabEntry::requireSingleItem, DataResult::success)
+                    .forGetter(TabDefinition::icon),
+            APPEARANCE_CODEC.forGetter(Appearance::of),
+            new ExtraCodecs.EitherCodec<>(
+                    TabEntry.CODEC_SIMPLE,
+                    TabEntry.CODEC_DATA
+            ).listOf().fieldOf("contents").xmap(TabEntry::crossMapTo, TabEntry::crossMapFrom).forGetter(TabDefinition::contents),
+            Codec.BOOL.optionalFieldOf("catch_all").forGetter(TabDefinition::catchAllOpt),
+            CatchAllOrder.CODEC.optionalFieldOf("catch_all_order").forGetter(TabDefinition::catchAllOrderOpt),
+            Codec.BOOL.optionalFieldOf("lazy").forGetter(TabDefinition::lazyOpt),
+            TabInclude.CODEC.listOf().optionalFieldOf("include").forGetter(TabDefinition::includeOpt)
+    ).apply(instance, (name, useVanilla, after, before, icon, appearance, contents, catchAll, catchAllOrder, lazy, include) -> new TabDefinition(
+            name,
+            useVanilla,
+            after,
+            before,
+            icon,
+            appearance.noTitleOpt(),
+            appearance.noScrollOpt(),
+            appearance.backgroundOpt(),
+            appearance.labelColorOpt(),
+            appearance.searchBarOpt(),
+            appearance.searchBarWidthOpt(),
+            appearance.slotColorOpt(),
+            appearance.tabImageOpt(),
+            contents,
+            catchAll,
+            catchAllOrder,
+            lazy,
+            appearance.titleOpt(),
+            include
+    )));
+
     private static final CreativeModeTab.DisplayItemsGenerator EMPTY_GENERATOR = (params, output) -> { };
 
     public boolean useVanilla()
@@ -47,6 +123,42 @@ public record TabDefinition(
         return searchBarOpt.orElse(false);
     }
 
+    public boolean catchAll()
+    {
+        return catchAllOpt.orElse(false);
+    }
+
+    public CatchAllOrder catchAllOrder()
+    {
+        return catchAllOrderOpt.orElse(CatchAllOrder.REGISTRY);
+    }
+
+    public boolean lazy()
+    {
+        return lazyOpt.orElse(false);
+    }
+
+    /**
+     * {@return the titles of this tab by language code, empty if the title is derived from the name}
+     */
+    public Map<String, String> titles()
+    {
+        return titleOpt.orElse(Map.of());
+    }
+
+    /**
+     * {@return the tabs whose contents are included in this tab}
+     */
+    public List<TabInclude> includes()
+    {
+        return includeOpt.orElse(List.of());
+    }
+
+    public String titleKey()
+    {
+        return "itemGroup." + JsonTabs.MODID + "." + name.getNamespace() + "." + name.getPath();
+    }
+
     public Supplier<ItemStack> makeIconSupplier()
     {
         return () -> icon.toStack(name, () ->
@@ -54,49 +166,94 @@ public record TabDefinition(
         );
     }
 
+    /**
+     * Build the generator of this tab's own contents, includes are only resolved when the tabs are built by the
+     * {@link JsonTabManager}
+     */
     public CreativeModeTab.DisplayItemsGenerator buildDisplayGenerator()
     {
-        if (contents.isEmpty())
+        return buildDisplayGenerator(new TabContentGenerator(this, List.of()));
+    }
+
+    CreativeModeTab.DisplayItemsGenerator buildDisplayGenerator(TabContentGenerator generator)
+    {
+        if (contents.isEmpty() && includes().isEmpty())
         {
             JsonTabs.LOGGER.warn("Tab definition '{}' doesn't specify any contents", name);
             return EMPTY_GENERATOR;
         }
-
-        return (params, output) ->
-        {
-            for (TabEntry entry : contents)
-            {
-                ItemStack stack = entry.toStack(name, () ->
-                        String.format("Found invalid entry '%s' in tab definition '%s', ignoring", entry.name(), name)
-                );
-
-                if (!stack.isEmpty() && stack.isItemEnabled(params.enabledFeatures()))
-                {
-                    output.accept(stack);
-                }
-            }
-        };
+        return generator;
     }
 
     public void checkIgnoredOptions()
     {
+        findIgnoredOptions().forEach(JsonTabs.LOGGER::warn);
+    }
+
+    /**
+     * {@return a message for every option of this definition which is specified but ignored}
+     */
+    public List<String> findIgnoredOptions()
+    {
+        List<String> messages = new ArrayList<>();
         if (useVanilla())
         {
-            String vanillaMsg = "Tab definition '{}' is set to use vanilla tab, specified {} will be ignored";
-            noTitleOpt.ifPresent(title -> JsonTabs.LOGGER.warn(vanillaMsg, name, "'no title' setting"));
-            noScrollOpt.ifPresent(scroll -> JsonTabs.LOGGER.warn(vanillaMsg, name, "'no scrollbar' setting"));
-            backgroundOpt.ifPresent(bg -> JsonTabs.LOGGER.warn(vanillaMsg, name, "background"));
-            labelColorOpt.ifPresent(col -> JsonTabs.LOGGER.warn(vanillaMsg, name, "label color"));
-            searchBarOpt.ifPresent(search -> JsonTabs.LOGGER.warn(vanillaMsg, name, "'search bar' option"));
-            searchBarWidthOpt.ifPresent(w -> JsonTabs.LOGGER.warn(vanillaMsg, name, "search bar width"));
-            slotColorOpt.ifPresent(col -> JsonTabs.LOGGER.warn(vanillaMsg, name, "slot color"));
-            tabImageOpt.ifPresent(img -> JsonTabs.LOGGER.warn(vanillaMsg, name, "tab image"));
+            String vanillaMsg = "Tab definition '" + name + "' is set to use vanilla tab, specified %s will be ignored";
+            noTitleOpt.ifPresent(title -> messages.add(String.format(vanillaMsg, "'no title' setting")));
+            noScrollOpt.ifPresent(scroll -> messages.add(String.format(vanillaMsg, "'no scrollbar' setting")));
+            backgroundOpt.ifPresent(bg -> messages.add(String.format(vanillaMsg, "background")));
+            labelColorOpt.ifPresent(col -> messages.add(String.format(vanillaMsg, "label color")));
+            searchBarOpt.ifPresent(search -> messages.add(String.format(vanillaMsg, "'search bar' option")));
+            searchBarWidthOpt.ifPresent(w -> messages.add(String.format(vanillaMsg, "search bar width")));
+            slotColorOpt.ifPresent(col -> messages.add(String.format(vanillaMsg, "slot color")));
+            tabImageOpt.ifPresent(img -> messages.add(String.format(vanillaMsg, "tab image")));
+            catchAllOpt.ifPresent(all -> messages.add(String.format(vanillaMsg, "'catch all' option")));
+            lazyOpt.ifPresent(lazy -> messages.add(String.format(vanillaMsg, "'lazy' option")));
+            titleOpt.ifPresent(title -> messages.add(String.format(vanillaMsg, "title")));
+            includeOpt.ifPresent(include -> messages.add(String.format(vanillaMsg, "includes")));
+        }
+
+        if (!catchAll())
+        {
+            catchAllOrderOpt.ifPresent(order -> messages.add(
+                    "Tab definition '" + name + "' is not a catch-all tab, specified catch-all order will be ignored"
+            ));
         }
 
         if (!searchBar())
         {
-            searchBarWidthOpt.ifPresent(w ->
-                    JsonTabs.LOGGER.warn("Tab definition '{}' has no search bar, specified search bar width will be ignored", name)
+            searchBarWidthOpt.ifPresent(w -> messages.add(
+                    "Tab definition '" + name + "' has no search bar, specified search bar width will be ignored"
+            ));
+        }
+        return messages;
+    }
+
+
+    private record Appearance(
+            Optional<Boolean> noTitleOpt,
+            Optional<Boolean> noScrollOpt,
+            Optional<ResourceLocation> backgroundOpt,
+            Optional<Integer> labelColorOpt,
+            Optional<Boolean> searchBarOpt,
+            Optional<Integer> searchBarWidthOpt,
+            Optional<Integer> slotColorOpt,
+            Optional<ResourceLocation> tabImageOpt,
+            Optional<Map<String, String>> titleOpt
+    )
+    {
+        static Appearance of(TabDefinition def)
+        {
+            return new Appearance(
+                    def.noTitleOpt,
+                    def.noScrollOpt,
+                    def.backgroundOpt,
+                    def.labelColorOpt,
+                    def.searchBarOpt,
+                    def.searchBarWidthOpt,
+                    def.slotColorOpt,
+                    def.tabImageOpt,
+                    def.titleOpt
             );
         }
     }
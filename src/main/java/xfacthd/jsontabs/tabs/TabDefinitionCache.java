@@ -0,0 +1,392 @@
+package xfacthd.jsontabs.tabs;
+
+import net.minecraft.resources.ResourceLocation;
+import xfacthd.jsontabs.JsonTabs;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.function.Function;
+import java.util.zip.CRC32C;
+
+/**
+ * Binary cache of decoded tab definitions, stored next to the definition files. Every cached definition is stored
+ * together with the size, modification time and content hash of the file it was decoded from, which allows
+ * invalidating the cache per file
+ */
+public final class TabDefinitionCache
+{
+    public static final Path CACHE_PATH = JsonTabManager.TABS_PATH.resolve(".cache").resolve("tabs.bin");
+    private static final int MAGIC = 0x4A544243; // "JTBC"
+    /**
+     * Must be incremented whenever the binary layout or the {@link TabDefinition} structure changes
+     */
+    private static final int FORMAT_VERSION = 7;
+    private static final long ARCHIVE_HASH_FLAG = 1L << 32;
+
+    /**
+     * {@return the path of the cache file of the given layout profile}
+     */
+    public static Path getCachePath(String profile)
+    {
+        if (profile.equals(JsonTabManager.DEFAULT_PROFILE))
+        {
+            return CACHE_PATH;
+        }
+        if (!JsonTabManager.isProfileName(profile))
+        {
+            // Keeps the cache directory itself and names escaping it from ever being used as a profile cache
+            throw new IllegalArgumentException("Invalid tab layout profile name '" + profile + "'");
+        }
+        return CACHE_PATH.resolveSibling("tabs-" + profile + ".bin");
+    }
+
+    /**
+     * Read the given cache file with a single read into a heap buffer. The file isn't mapped, a mapping stays open
+     * until it is garbage collected and would make replacing the file fail on Windows
+     * @return The cached definitions by file name, empty if there is no cache or if it is unusable
+     */
+    public static Map<String, CachedFile> read(Path cachePath)
+    {
+        if (!Files.isRegularFile(cachePath))
+        {
+            return Map.of();
+        }
+
+        try
+        {
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(cachePath));
+            if (buffer.getInt() != MAGIC)
+            {
+                JsonTabs.LOGGER.warn("Tab definition cache is corrupted, ignoring");
+                return Map.of();
+            }
+            int version = buffer.getInt();
+            if (version != FORMAT_VERSION)
+            {
+                JsonTabs.LOGGER.info("Tab definition cache has version {}, expected {}, ignoring", version, FORMAT_VERSION);
+                return Map.of();
+            }
+
+            // Every file takes at least its name's length and its stamp
+            int count = readLength(buffer, Integer.BYTES + 3 * Long.BYTES);
+            Map<String, CachedFile> files = new HashMap<>(count);
+            for (int i = 0; i < count; i++)
+            {
+                String fileName = readString(buffer);
+                FileStamp stamp = new FileStamp(buffer.getLong(), buffer.getLong(), buffer.getLong());
+                files.put(fileName, new CachedFile(stamp, readDefinition(buffer)));
+            }
+            return files;
+        }
+        catch (IOException | RuntimeException e)
+        {
+            JsonTabs.LOGGER.warn("Failed to read tab definition cache, ignoring", e);
+            return Map.of();
+        }
+    }
+
+    /**
+     * Replace the given cache file with the given definitions
+     * @param files The definitions to store by file name
+     */
+    public static void write(Path cachePath, Map<String, CachedFile> files)
+    {
+        Path tempPath = cachePath.resolveSibling(cachePath.getFileName() + ".tmp");
+        try
+        {
+            Files.createDirectories(cachePath.getParent());
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempPath))))
+            {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeInt(files.size());
+                for (Map.Entry<String, CachedFile> entry : files.entrySet())
+                {
+                    FileStamp stamp = entry.getValue().stamp();
+                    writeString(out, entry.getKey());
+                    out.writeLong(stamp.size());
+                    out.writeLong(stamp.lastModified());
+                    out.writeLong(stamp.hash());
+                    writeDefinition(out, entry.getValue().definition());
+                }
+            }
+            Files.move(tempPath, cachePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (IOException e)
+        {
+            JsonTabs.LOGGER.warn("Failed to write tab definition cache", e);
+        }
+    }
+
+    /**
+     * {@return the size and modification time of the given file, the hash is only computed on demand}
+     * For entries of zip archives, the CRC stored in the archive's central directory is used as the hash
+     */
+    public static FileStamp stat(Path path) throws IOException
+    {
+        if (path.getFileSystem() != FileSystems.getDefault())
+        {
+            Map<String, Object> attributes = Files.readAttributes(path, "zip:size,lastModifiedTime,crc");
+            return new FileStamp(
+                    (Long) attributes.get("size"),
+                    ((FileTime) attributes.get("lastModifiedTime")).toMillis(),
+                    // Tag the CRC32 to keep it apart from CRC32C hashes and from the "no hash" value
+                    (Long) attributes.get("crc") | ARCHIVE_HASH_FLAG
+            );
+        }
+
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        return new FileStamp(attributes.size(), attributes.lastModifiedTime().toMillis(), 0L);
+    }
+
+    public static long hash(byte[] data)
+    {
+        CRC32C crc = new CRC32C();
+        crc.update(data);
+        return crc.getValue();
+    }
+
+
+
+    private static void writeDefinition(DataOutputStream out, TabDefinition def) throws IOException
+    {
+        writeString(out, def.name().toString());
+        writeOptional(out, def.useVanillaOpt(), DataOutputStream::writeBoolean);
+        writeList(out, def.after(), TabDefinitionCache::writeLocation);
+        writeList(out, def.before(), TabDefinitionCache::writeLocation);
+        writeEntry(out, def.icon());
+        writeOptional(out, def.noTitleOpt(), DataOutputStream::writeBoolean);
+        writeOptional(out, def.noScrollOpt(), DataOutputStream::writeBoolean);
+        writeOptional(out, def.backgroundOpt(), TabDefinitionCache::writeLocation);
+        writeOptional(out, def.labelColorOpt(), DataOutputStream::writeInt);
+        writeOptional(out, def.searchBarOpt(), DataOutputStream::writeBoolean);
+        writeOptional(out, def.searchBarWidthOpt(), DataOutputStream::writeInt);
+        writeOptional(out, def.slotColorOpt(), DataOutputStream::writeInt);
+        writeOptional(out, def.tabImageOpt(), TabDefinitionCache::writeLocation);
+        writeList(out, def.contents(), TabDefinitionCache::writeEntry);
+        writeOptional(out, def.catchAllOpt(), DataOutputStream::writeBoolean);
+        writeOptional(out, def.catchAllOrderOpt(), (stream, order) -> stream.writeByte(order.ordinal()));
+        writeOptional(out, def.lazyOpt(), DataOutputStream::writeBoolean);
+        writeOptional(out, def.titleOpt(), TabDefinitionCache::writeTitles);
+        writeOptional(out, def.includeOpt(), (stream, includes) -> writeList(stream, includes, TabDefinitionCache::writeInclude));
+    }
+
+    private static TabDefinition readDefinition(ByteBuffer buffer)
+    {
+        return new TabDefinition(
+                readLocation(buffer),
+                readOptional(buffer, TabDefinitionCache::readBoolean),
+                readList(buffer, TabDefinitionCache::readLocation),
+                readList(buffer, TabDefinitionCache::readLocation),
+                readEntry(buffer),
+                readOptional(buffer, TabDefinitionCache::readBoolean),
+                readOptional(buffer, TabDefinitionCache::readBoolean),
+                readOptional(buffer, TabDefinitionCache::readLocation),
+                readOptional(buffer, ByteBuffer::getInt),
+                readOptional(buffer, TabDefinitionCache::readBoolean),
+                readOptional(buffer, ByteBuffer::getInt),
+                readOptional(buffer, ByteBuffer::getInt),
+                readOptional(buffer, TabDefinitionCache::readLocation),
+                readList(buffer, TabDefinitionCache::readEntry),
+                readOptional(buffer, TabDefinitionCache::readBoolean),
+                readOptional(buffer, buf -> CatchAllOrder.values()[buf.get()]),
+                readOptional(buffer, TabDefinitionCache::readBoolean),
+                readOptional(buffer, TabDefinitionCache::readTitles),
+                readOptional(buffer, buf -> readList(buf, TabDefinitionCache::readInclude))
+        );
+    }
+
+    private static void writeEntry(DataOutputStream out, TabEntry entry) throws IOException
+    {
+        writeSelector(out, entry.name());
+        writeString(out, entry.nbt());
+        writeList(out, entry.conditions().mods(), TabDefinitionCache::writeString);
+        writeList(out, entry.conditions().features(), TabDefinitionCache::writeLocation);
+        writeList(out, entry.conditions().toggles(), TabDefinitionCache::writeString);
+    }
+
+    private static TabEntry readEntry(ByteBuffer buffer)
+    {
+        ItemSelector name = readSelector(buffer);
+        String nbt = readString(buffer);
+        EntryConditions conditions = new EntryConditions(
+                readList(buffer, TabDefinitionCache::readString),
+                readList(buffer, TabDefinitionCache::readLocation),
+                readList(buffer, TabDefinitionCache::readString)
+        );
+        return new TabEntry(name, nbt, conditions.isEmpty() ? EntryConditions.NONE : conditions);
+    }
+
+    private static void writeSelector(DataOutputStream out, ItemSelector selector) throws IOException
+    {
+        out.writeByte(selector.type().ordinal());
+        writeOptional(out, Optional.ofNullable(selector.namespace()), TabDefinitionCache::writeString);
+        writeString(out, selector.path());
+    }
+
+    private static ItemSelector readSelector(ByteBuffer buffer)
+    {
+        return new ItemSelector(
+                ItemSelector.Type.values()[buffer.get()],
+                readOptional(buffer, TabDefinitionCache::readString).orElse(null),
+                readString(buffer)
+        );
+    }
+
+    private static void writeInclude(DataOutputStream out, TabInclude include) throws IOException
+    {
+        writeLocation(out, include.tab());
+        writeList(out, include.exclude(), TabDefinitionCache::writeSelector);
+    }
+
+    private static TabInclude readInclude(ByteBuffer buffer)
+    {
+        return new TabInclude(readLocation(buffer), readList(buffer, TabDefinitionCache::readSelector));
+    }
+
+    private static void writeTitles(DataOutputStream out, Map<String, String> titles) throws IOException
+    {
+        out.writeInt(titles.size());
+        for (Map.Entry<String, String> entry : titles.entrySet())
+        {
+            writeString(out, entry.getKey());
+            writeString(out, entry.getValue());
+        }
+    }
+
+    private static Map<String, String> readTitles(ByteBuffer buffer)
+    {
+        int size = readLength(buffer, 2 * Integer.BYTES);
+        Map<String, String> titles = new HashMap<>(size);
+        for (int i = 0; i < size; i++)
+        {
+            titles.put(readString(buffer), readString(buffer));
+        }
+        return Map.copyOf(titles);
+    }
+
+    private static void writeLocation(DataOutputStream out, ResourceLocation location) throws IOException
+    {
+        writeString(out, location.toString());
+    }
+
+    private static ResourceLocation readLocation(ByteBuffer buffer)
+    {
+        return new ResourceLocation(readString(buffer));
+    }
+
+    private static boolean readBoolean(ByteBuffer buffer)
+    {
+        return buffer.get() != 0;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException
+    {
+        // DataOutputStream#writeUTF() is limited to 64k bytes which large SNBT strings may exceed
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer)
+    {
+        byte[] bytes = new byte[readLength(buffer, 1)];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Read a length or element count and check it against the remaining data, so that a corrupted cache fails with
+     * an exception handled by {@link #read(Path)} instead of requesting a huge allocation
+     * @param minElementSize The minimum amount of bytes each element takes up in the cache
+     */
+    private static int readLength(ByteBuffer buffer, int minElementSize)
+    {
+        int length = buffer.getInt();
+        if (length < 0 || (long) length * minElementSize > buffer.remaining())
+        {
+            throw new IllegalStateException("Invalid length " + length + " with " + buffer.remaining() + " bytes remaining");
+        }
+        return length;
+    }
+
+    private static <T> void writeOptional(DataOutputStream out, Optional<T> value, Writer<T> writer) throws IOException
+    {
+        out.writeBoolean(value.isPresent());
+        if (value.isPresent())
+        {
+            writer.write(out, value.get());
+        }
+    }
+
+    private static <T> Optional<T> readOptional(ByteBuffer buffer, Function<ByteBuffer, T> reader)
+    {
+        return buffer.get() != 0 ? Optional.of(reader.apply(buffer)) : Optional.empty();
+    }
+
+    private static <T> void writeList(DataOutputStream out, List<T> values, Writer<T> writer) throws IOException
+    {
+        out.writeInt(values.size());
+        for (T value : values)
+        {
+            writer.write(out, value);
+        }
+    }
+
+    private static <T> List<T> readList(ByteBuffer buffer, Function<ByteBuffer, T> reader)
+    {
+        int size = readLength(buffer, 1);
+        List<T> values = new ArrayList<>(size);
+        for (int i = 0; i < size; i++)
+        {
+            values.add(reader.apply(buffer));
+        }
+        return List.copyOf(values);
+    }
+
+
+
+    @FunctionalInterface
+    private interface Writer<T>
+    {
+        void write(DataOutputStream out, T value) throws IOException;
+    }
+
+    /**
+     * @param size The file size in bytes
+     * @param lastModified The modification time in milliseconds
+     * @param hash The CRC32C of the file contents or the flagged CRC32 of an archive entry, 0 if not computed yet
+     */
+    public record FileStamp(long size, long lastModified, long hash)
+    {
+        public boolean matchesAttributes(FileStamp other)
+        {
+            return size == other.size && lastModified == other.lastModified;
+        }
+
+        public boolean matchesContents(FileStamp other)
+        {
+            return size == other.size && hash == other.hash;
+        }
+
+        /**
+         * {@return whether the hash is known without reading the file, which is the case for archive entries}
+         */
+        public boolean hasHash()
+        {
+            return hash != 0L;
+        }
+
+        public FileStamp withHash(long hash)
+        {
+            return new FileStamp(size, lastModified, hash);
+        }
+    }
+
+    public record CachedFile(FileStamp stamp, TabDefinition definition) { }
+}
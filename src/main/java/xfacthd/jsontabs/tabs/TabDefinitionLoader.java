@@ -0,0 +1,342 @@
+package xfacthd.jsontabs.tabs;
+
+import com.google.gson.*;
+import com.mojang.serialization.DataResult;
+import com.mojang.serialization.JsonOps;
+import net.minecraft.resources.ResourceLocation;
+import xfacthd.jsontabs.JsonTabs;
+import xfacthd.jsontabs.util.Utils;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Reads and decodes tab definition files in parallel. Every file is handled in isolation, errors are collected
+ * instead of aborting the whole load and the result is always in the order of the given file list.
+ * Files which didn't change since the last load are taken from the {@link TabDefinitionCache}.
+ * <p>
+ * Definitions are either loose JSON files or JSON files at the root of zip archives in the definition directory.
+ * Archives are mounted as a zip {@link FileSystem} and their entries are streamed without extracting them
+ */
+public final class TabDefinitionLoader
+{
+    private static final int MAX_THREADS = 8;
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+
+    /**
+     * List the loose definition files and archive entries in the given directory and load them. Loose files and
+     * archives are handled in file name order, the entries of an archive in entry name order
+     * @param directory The definition directory
+     * @param cache The previously decoded files, either from the binary cache or from the last load
+     */
+    public static Result loadDirectory(Path directory, Map<String, TabDefinitionCache.CachedFile> cache) throws IOException
+    {
+        List<FileSystem> archives = new ArrayList<>();
+        try
+        {
+            return loadAll(listDirectory(directory, archives), cache);
+        }
+        finally
+        {
+            closeArchives(archives);
+        }
+    }
+
+    /**
+     * List the loose definition files and archive entries in the given directory, in the order they are loaded in
+     * @param directory The definition directory
+     * @param archives Receives the opened archives, they must be kept open while their entries are read and be
+     *                 closed with {@link #closeArchives(List)} afterwards
+     */
+    public static List<DefinitionFile> listDirectory(Path directory, List<FileSystem> archives) throws IOException
+    {
+        List<Path> paths;
+        try (Stream<Path> stream = Files.list(directory))
+        {
+            paths = stream.filter(Files::isRegularFile)
+                    .filter(filePath -> isDefinitionFile(filePath) || isArchive(filePath))
+                    .sorted()
+                    .toList();
+        }
+
+        List<DefinitionFile> files = new ArrayList<>();
+        for (Path filePath : paths)
+        {
+            if (isDefinitionFile(filePath))
+            {
+                files.add(DefinitionFile.of(filePath));
+            }
+            else
+            {
+                FileSystem archive = openArchive(filePath);
+                archives.add(archive);
+                listArchive(filePath, archive, files);
+            }
+        }
+        return files;
+    }
+
+    public static void closeArchives(List<FileSystem> archives)
+    {
+        for (FileSystem archive : archives)
+        {
+            try
+            {
+                archive.close();
+            }
+            catch (IOException e)
+            {
+                JsonTabs.LOGGER.warn("Failed to close definition archive '{}'", archive, e);
+            }
+        }
+    }
+
+    /**
+     * {@return whether the given file name is one the definition directory is watched for}
+     */
+    public static boolean isRelevantFile(Path fileName)
+    {
+        return isDefinitionFile(fileName) || isArchive(fileName);
+    }
+
+    private static boolean isDefinitionFile(Path filePath)
+    {
+        return filePath.toString().endsWith(".json");
+    }
+
+    private static boolean isArchive(Path filePath)
+    {
+        return filePath.toString().endsWith(".zip");
+    }
+
+    private static FileSystem openArchive(Path archivePath) throws IOException
+    {
+        try
+        {
+            return FileSystems.newFileSystem(archivePath);
+        }
+        catch (IOException | RuntimeException e)
+        {
+            throw new IOException("Failed to open definition archive '" + archivePath.toAbsolutePath().normalize() + "'", e);
+        }
+    }
+
+    /**
+     * Add the JSON files at the root of the given archive, opening the archive only reads its central directory
+     */
+    private static void listArchive(Path archivePath, FileSystem archive, List<DefinitionFile> files) throws IOException
+    {
+        String archiveName = archivePath.getFileName().toString();
+        String displayPrefix = archivePath.toAbsolutePath().normalize() + "!";
+        for (Path root : archive.getRootDirectories())
+        {
+            try (Stream<Path> stream = Files.list(root))
+            {
+                stream.filter(Files::isRegularFile)
+                        .filter(TabDefinitionLoader::isDefinitionFile)
+                        .sorted()
+                        .forEach(entry -> files.add(new DefinitionFile(
+                                entry,
+                                archiveName + "!" + entry,
+                                displayPrefix + entry
+                        )));
+            }
+        }
+    }
+
+    /**
+     * Read and decode the given files on a bounded fork-join pool
+     * @param files The definition files to load, the order of this list determines the order of the result
+     * @param cache The previously decoded files, either from the binary cache or from the last load
+     * @return The decoded definitions and all errors encountered while reading, decoding and checking them
+     */
+    public static Result loadAll(List<DefinitionFile> files, Map<String, TabDefinitionCache.CachedFile> cache)
+    {
+        Function<DefinitionFile, FileResult> loader = file -> loadFile(file, cache.get(file.key()));
+
+        List<FileResult> results;
+        if (files.size() <= 1)
+        {
+            results = files.stream().map(loader).toList();
+        }
+        else
+        {
+            int threads = Math.max(1, Math.min(Math.min(Runtime.getRuntime().availableProcessors(), MAX_THREADS), files.size()));
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try
+            {
+                // A parallel stream submitted to a custom pool runs on that pool, toList() keeps the encounter order
+                results = pool.submit(() -> files.parallelStream().map(loader).toList()).join();
+            }
+            finally
+            {
+                pool.shutdown();
+            }
+        }
+
+        Map<ResourceLocation, DefinitionFile> processed = new HashMap<>();
+        Map<String, TabDefinitionCache.CachedFile> newCache = new LinkedHashMap<>();
+        boolean cacheDirty = false;
+        List<TabDefinition> definitions = new ArrayList<>(results.size());
+        List<String> errors = new ArrayList<>();
+        for (FileResult result : results)
+        {
+            if (result.error() != null)
+            {
+                errors.add(result.error());
+                continue;
+            }
+
+            newCache.put(result.file().key(), new TabDefinitionCache.CachedFile(result.stamp(), result.definition()));
+            cacheDirty |= !result.fromCache();
+
+            TabDefinition tabDef = result.definition();
+            DefinitionFile previous = processed.putIfAbsent(tabDef.name(), result.file());
+            if (previous != null)
+            {
+                errors.add(String.format(
+                        "Found duplicated tab name '%s' in file '%s', previously found in '%s'",
+                        tabDef.name(),
+                        result.file().displayName(),
+                        previous.displayName()
+                ));
+                continue;
+            }
+            definitions.add(tabDef);
+        }
+
+        boolean changed = cacheDirty || newCache.size() != cache.size();
+        return new Result(definitions, errors, newCache, changed);
+    }
+
+    private static FileResult loadFile(DefinitionFile file, TabDefinitionCache.CachedFile cached)
+    {
+        Path filePath = file.path();
+        try
+        {
+            TabDefinitionCache.FileStamp stamp = TabDefinitionCache.stat(filePath);
+            if (cached != null && cached.stamp().matchesAttributes(stamp))
+            {
+                return new FileResult(file, cached.definition(), cached.stamp(), true, null);
+            }
+
+            // Archive entries provide their CRC from the central directory, the contents are only read if it changed
+            if (stamp.hasHash() && cached != null && cached.stamp().matchesContents(stamp))
+            {
+                return new FileResult(file, cached.definition(), stamp, false, null);
+            }
+
+            long readStart = System.nanoTime();
+            byte[] data = Files.readAllBytes(filePath);
+            TabMetrics.FILE_READ.record(System.nanoTime() - readStart);
+
+            if (!stamp.hasHash())
+            {
+                stamp = stamp.withHash(TabDefinitionCache.hash(data));
+                if (cached != null && cached.stamp().matchesContents(stamp))
+                {
+                    // Only the modification time changed, store the new stamp
+                    return new FileResult(file, cached.definition(), stamp, false, null);
+                }
+            }
+
+            long decodeStart = System.nanoTime();
+            TabDefinition definition = decode(data);
+            TabMetrics.DECODE.record(System.nanoTime() - decodeStart);
+            return new FileResult(file, definition, stamp, false, null);
+        }
+        catch (IOException | RuntimeException e)
+        {
+            String message = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+            return new FileResult(file, null, null, false, String.format(
+                    "Failed to load file '%s': %s", file.displayName(), message
+            ));
+        }
+    }
+
+    /**
+     * Decode the given file contents with the streaming reader. If the reader rejects the contents, they are
+     * decoded again through the codec to report the exact error
+     */
+    static TabDefinition decode(byte[] data)
+    {
+        try
+        {
+            return TabDefinitionReader.read(data);
+        }
+        catch (IOException | RuntimeException e)
+        {
+            return decode(Utils.readJsonBytes(data, GSON));
+        }
+    }
+
+    static TabDefinition decode(JsonObject json)
+    {
+        DataResult<TabDefinition> def = TabDefinition.CODEC.parse(JsonOps.INSTANCE, json);
+        if (def.error().isPresent())
+        {
+            throw new JsonParseException(def.error().get().message());
+        }
+
+        return def.result().orElseThrow(() -> new JsonParseException(
+                "Unknown error while retrieving parsed tab definition"
+        ));
+    }
+
+
+
+    /**
+     * @param path The path of the file, either in the default or in an archive's file system
+     * @param key The key of the file in the {@link TabDefinitionCache}, unique across loose files and archives
+     * @param displayName The name of the file used in error messages
+     */
+    public record DefinitionFile(Path path, String key, String displayName)
+    {
+        public static DefinitionFile of(Path filePath)
+        {
+            return new DefinitionFile(filePath, filePath.getFileName().toString(), filePath.toAbsolutePath().normalize().toString());
+        }
+    }
+
+    private record FileResult(
+            DefinitionFile file,
+            TabDefinition definition,
+            TabDefinitionCache.FileStamp stamp,
+            boolean fromCache,
+            String error
+    ) { }
+
+    /**
+     * @param definitions The successfully decoded definitions in file order
+     * @param errors All errors encountered
+     * @param files The decoded files by cache key, used as the base for the next reload
+     * @param changed Whether any file was added, removed or decoded again, in which case the on-disk cache is
+     *                outdated
+     */
+    public record Result(
+            List<TabDefinition> definitions,
+            List<String> errors,
+            Map<String, TabDefinitionCache.CachedFile> files,
+            boolean changed
+    )
+    {
+        public boolean hasErrors()
+        {
+            return !errors.isEmpty();
+        }
+
+        public void logErrors()
+        {
+            StringBuilder report = new StringBuilder();
+            for (String error : errors)
+            {
+                report.append("\n - ").append(error);
+            }
+            JsonTabs.LOGGER.error("Encountered {} error(s) while loading tab definitions:{}", errors.size(), report);
+        }
+    }
+}
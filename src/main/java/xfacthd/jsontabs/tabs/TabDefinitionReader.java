@@ -0,0 +1,443 @@
+package xfacthd.jsontabs.tabs;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.internal.LazilyParsedNumber;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import net.minecraft.resources.ResourceLocation;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Single-pass streaming decoder for tab definitions, producing a {@link TabDefinition} directly from a
+ * {@link JsonReader} without building a JSON tree or going through {@link TabDefinition#CODEC}.
+ * <p>
+ * The reader accepts exactly the values the codec accepts: booleans and numbers are interchangeable, integers
+ * with flexible format accept hex strings and invalid values of optional fields are ignored. It does not try to
+ * reproduce the codec's error messages, on any unexpected input it throws and the caller is expected to decode
+ * the file again through the codec to obtain the exact error
+ */
+public final class TabDefinitionReader
+{
+    public static TabDefinition read(byte[] data) throws IOException
+    {
+        Reader streamReader = new InputStreamReader(new ByteArrayInputStream(data), StandardCharsets.UTF_8.newDecoder());
+        try (JsonReader reader = new JsonReader(streamReader))
+        {
+            reader.setLenient(false);
+            return readDefinition(reader);
+        }
+    }
+
+    public static TabDefinition readDefinition(JsonReader reader) throws IOException
+    {
+        ResourceLocation name = null;
+        Optional<Boolean> useVanilla = Optional.empty();
+        List<ResourceLocation> after = null;
+        List<ResourceLocation> before = null;
+        TabEntry icon = null;
+        Optional<Boolean> noTitle = Optional.empty();
+        Optional<Boolean> noScroll = Optional.empty();
+        Optional<ResourceLocation> background = Optional.empty();
+        Optional<Integer> labelColor = Optional.empty();
+        Optional<Boolean> searchBar = Optional.empty();
+        Optional<Integer> searchBarWidth = Optional.empty();
+        Optional<Integer> slotColor = Optional.empty();
+        Optional<ResourceLocation> tabImage = Optional.empty();
+        List<TabEntry> contents = null;
+        Optional<Boolean> catchAll = Optional.empty();
+        Optional<CatchAllOrder> catchAllOrder = Optional.empty();
+        Optional<Boolean> lazy = Optional.empty();
+        Optional<Map<String, String>> title = Optional.empty();
+        Optional<List<TabInclude>> include = Optional.empty();
+
+        expect(reader, JsonToken.BEGIN_OBJECT);
+        reader.beginObject();
+        while (reader.hasNext())
+        {
+            String key = reader.nextName();
+            // Duplicate keys overwrite the previous value, matching the behaviour of the JSON tree
+            switch (key)
+            {
+                case "name" -> name = readLocation(reader);
+                case "use_vanilla" -> useVanilla = readOptionalBoolean(reader);
+                case "after" -> after = readList(reader, TabDefinitionReader::readLocation);
+                case "before" -> before = readList(reader, TabDefinitionReader::readLocation);
+                case "icon" -> icon = readIcon(reader);
+                case "no_title" -> noTitle = readOptionalBoolean(reader);
+                case "no_scrollbar" -> noScroll = readOptionalBoolean(reader);
+                case "background" -> background = readOptionalLocation(reader);
+                case "label_color" -> labelColor = readOptionalFlexibleInt(reader);
+                case "search_bar" -> searchBar = readOptionalBoolean(reader);
+                case "search_bar_width" -> searchBarWidth = readOptionalInt(reader);
+                case "slot_color" -> slotColor = readOptionalFlexibleInt(reader);
+                case "tab_image" -> tabImage = readOptionalLocation(reader);
+                case "contents" -> contents = readList(reader, TabDefinitionReader::readEntry);
+                case "catch_all" -> catchAll = readOptionalBoolean(reader);
+                case "catch_all_order" -> catchAllOrder = readOptionalOrder(reader);
+                case "lazy" -> lazy = readOptionalBoolean(reader);
+                case "title" -> title = readOptionalTitle(reader);
+                case "include" -> include = readOptionalIncludes(reader);
+                default -> reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        return new TabDefinition(
+                require(name, "name"),
+                useVanilla,
+                require(after, "after"),
+                require(before, "before"),
+                require(icon, "icon"),
+                noTitle,
+                noScroll,
+                background,
+                labelColor,
+                searchBar,
+                searchBarWidth,
+                slotColor,
+                tabImage,
+                require(contents, "contents"),
+                catchAll,
+                catchAllOrder,
+                lazy,
+                title,
+                include
+        );
+    }
+
+    private static TabEntry readIcon(JsonReader reader) throws IOException
+    {
+        TabEntry icon = readEntry(reader);
+        if (icon != null && !icon.name().isSingleItem())
+        {
+            throw new JsonParseException("Expected a single item, got '" + icon.name() + "'");
+        }
+        return icon;
+    }
+
+    private static TabEntry readEntry(JsonReader reader) throws IOException
+    {
+        JsonToken token = reader.peek();
+        if (token == JsonToken.STRING)
+        {
+            return new TabEntry(readSelector(reader), "");
+        }
+        if (token == JsonToken.NULL)
+        {
+            reader.nextNull();
+            return null;
+        }
+
+        expect(reader, JsonToken.BEGIN_OBJECT);
+        ItemSelector name = null;
+        Optional<String> data = Optional.empty();
+        Optional<EntryConditions> conditions = Optional.empty();
+        reader.beginObject();
+        while (reader.hasNext())
+        {
+            switch (reader.nextName())
+            {
+                case "name" -> name = readSelector(reader);
+                case "data" -> data = reader.peek() == JsonToken.STRING ? Optional.of(reader.nextString()) : skipInvalid(reader);
+                case "conditions" -> conditions = readOptionalConditions(reader);
+                default -> reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return new TabEntry(require(name, "name"), data.orElse(""), conditions.orElse(EntryConditions.NONE));
+    }
+
+    /**
+     * Each list of the conditions is optional on its own, like in the codec an invalid list is ignored and falls back
+     * to an empty list without affecting the other lists
+     */
+    private static Optional<EntryConditions> readOptionalConditions(JsonReader reader) throws IOException
+    {
+        if (reader.peek() != JsonToken.BEGIN_OBJECT)
+        {
+            return skipInvalid(reader);
+        }
+
+        List<String> mods = List.of();
+        List<ResourceLocation> features = List.of();
+        List<String> toggles = List.of();
+        reader.beginObject();
+        while (reader.hasNext())
+        {
+            switch (reader.nextName())
+            {
+                case "mods" -> mods = readOptionalList(reader, Optional::of).orElse(List.of());
+                case "features" -> features = readOptionalList(reader, value -> ResourceLocation.read(value).result()).orElse(List.of());
+                case "toggles" -> toggles = readOptionalList(reader, Optional::of).orElse(List.of());
+                default -> reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return Optional.of(new EntryConditions(mods, features, toggles));
+    }
+
+    /**
+     * Read a list of strings converted with the given parser, the list is invalid if any element is not a string
+     * or fails to parse
+     */
+    private static <T> Optional<List<T>> readOptionalList(JsonReader reader, Function<String, Optional<T>> parser) throws IOException
+    {
+        if (reader.peek() != JsonToken.BEGIN_ARRAY)
+        {
+            return skipInvalid(reader);
+        }
+
+        List<T> values = new ArrayList<>();
+        boolean valid = true;
+        reader.beginArray();
+        while (reader.hasNext())
+        {
+            Optional<T> value = reader.peek() == JsonToken.STRING ? parser.apply(reader.nextString()) : skipInvalid(reader);
+            value.ifPresent(values::add);
+            valid &= value.isPresent();
+        }
+        reader.endArray();
+        return valid ? Optional.of(List.copyOf(values)) : Optional.empty();
+    }
+
+    private static ItemSelector readSelector(JsonReader reader) throws IOException
+    {
+        String value = readString(reader);
+        return value == null ? null : ItemSelector.parse(value).getOrThrow(false, msg -> { });
+    }
+
+    private static ResourceLocation readLocation(JsonReader reader) throws IOException
+    {
+        String value = readString(reader);
+        return value == null ? null : ResourceLocation.read(value).getOrThrow(false, msg -> { });
+    }
+
+    private static String readString(JsonReader reader) throws IOException
+    {
+        if (reader.peek() == JsonToken.NULL)
+        {
+            reader.nextNull();
+            return null;
+        }
+        expect(reader, JsonToken.STRING);
+        return reader.nextString();
+    }
+
+    private static Optional<Boolean> readOptionalBoolean(JsonReader reader) throws IOException
+    {
+        return switch (reader.peek())
+        {
+            case BOOLEAN -> Optional.of(reader.nextBoolean());
+            // Numbers are accepted as booleans by the codec
+            case NUMBER -> Optional.of((byte) new LazilyParsedNumber(reader.nextString()).intValue() != 0);
+            default -> skipInvalid(reader);
+        };
+    }
+
+    private static Optional<Integer> readOptionalInt(JsonReader reader) throws IOException
+    {
+        return switch (reader.peek())
+        {
+            case NUMBER -> Optional.of(new LazilyParsedNumber(reader.nextString()).intValue());
+            // Booleans are accepted as numbers by the codec
+            case BOOLEAN -> Optional.of(reader.nextBoolean() ? 1 : 0);
+            default -> skipInvalid(reader);
+        };
+    }
+
+    private static Optional<Integer> readOptionalFlexibleInt(JsonReader reader) throws IOException
+    {
+        if (reader.peek() == JsonToken.STRING)
+        {
+            try
+            {
+                return Optional.of(Long.decode(reader.nextString()).intValue());
+            }
+            catch (NumberFormatException e)
+            {
+                return Optional.empty();
+            }
+        }
+        return readOptionalInt(reader);
+    }
+
+    private static Optional<ResourceLocation> readOptionalLocation(JsonReader reader) throws IOException
+    {
+        if (reader.peek() != JsonToken.STRING)
+        {
+            return skipInvalid(reader);
+        }
+        return ResourceLocation.read(reader.nextString()).result();
+    }
+
+    private static Optional<CatchAllOrder> readOptionalOrder(JsonReader reader) throws IOException
+    {
+        if (reader.peek() != JsonToken.STRING)
+        {
+            return skipInvalid(reader);
+        }
+
+        String value = reader.nextString();
+        for (CatchAllOrder order : CatchAllOrder.values())
+        {
+            if (order.getSerializedName().equals(value))
+            {
+                return Optional.of(order);
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Titles are either a plain string in the default language or an object of strings by language code, a single
+     * invalid value makes the codec ignore the whole title
+     */
+    private static Optional<Map<String, String>> readOptionalTitle(JsonReader reader) throws IOException
+    {
+        if (reader.peek() == JsonToken.STRING)
+        {
+            return Optional.of(Map.of(TabDefinition.DEFAULT_LANGUAGE, reader.nextString()));
+        }
+        if (reader.peek() != JsonToken.BEGIN_OBJECT)
+        {
+            return skipInvalid(reader);
+        }
+
+        Map<String, String> titles = new HashMap<>();
+        boolean valid = true;
+        reader.beginObject();
+        while (reader.hasNext())
+        {
+            String language = reader.nextName();
+            if (reader.peek() == JsonToken.STRING)
+            {
+                titles.put(language, reader.nextString());
+            }
+            else
+            {
+                reader.skipValue();
+                valid = false;
+            }
+        }
+        reader.endObject();
+        return valid ? Optional.of(Map.copyOf(titles)) : Optional.empty();
+    }
+
+    /**
+     * Includes are a list of tab names or objects with a tab name and optional exclusions, a single invalid include
+     * makes the codec ignore all includes while invalid exclusions only make it ignore the exclusions of that include
+     */
+    private static Optional<List<TabInclude>> readOptionalIncludes(JsonReader reader) throws IOException
+    {
+        if (reader.peek() != JsonToken.BEGIN_ARRAY)
+        {
+            return skipInvalid(reader);
+        }
+
+        List<TabInclude> includes = new ArrayList<>();
+        boolean valid = true;
+        reader.beginArray();
+        while (reader.hasNext())
+        {
+            TabInclude include = readInclude(reader);
+            if (include != null)
+            {
+                includes.add(include);
+            }
+            else
+            {
+                valid = false;
+            }
+        }
+        reader.endArray();
+        return valid ? Optional.of(List.copyOf(includes)) : Optional.empty();
+    }
+
+    private static TabInclude readInclude(JsonReader reader) throws IOException
+    {
+        if (reader.peek() == JsonToken.STRING)
+        {
+            return ResourceLocation.read(reader.nextString()).result().map(tab -> new TabInclude(tab, List.of())).orElse(null);
+        }
+        if (reader.peek() != JsonToken.BEGIN_OBJECT)
+        {
+            reader.skipValue();
+            return null;
+        }
+
+        Optional<ResourceLocation> tab = Optional.empty();
+        List<ItemSelector> exclude = List.of();
+        reader.beginObject();
+        while (reader.hasNext())
+        {
+            switch (reader.nextName())
+            {
+                case "tab" -> tab = readOptionalLocation(reader);
+                case "exclude" -> exclude = readOptionalList(reader, value -> ItemSelector.parse(value).result()).orElse(List.of());
+                default -> reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        List<ItemSelector> exclusions = exclude;
+        return tab.map(name -> new TabInclude(name, exclusions)).orElse(null);
+    }
+
+    private static <T> List<T> readList(JsonReader reader, ValueReader<T> elementReader) throws IOException
+    {
+        if (reader.peek() == JsonToken.NULL)
+        {
+            reader.nextNull();
+            return null;
+        }
+
+        expect(reader, JsonToken.BEGIN_ARRAY);
+        List<T> values = new ArrayList<>();
+        reader.beginArray();
+        while (reader.hasNext())
+        {
+            values.add(Objects.requireNonNull(elementReader.read(reader), "Null element in list"));
+        }
+        reader.endArray();
+        return Collections.unmodifiableList(values);
+    }
+
+    /**
+     * Invalid values of optional fields are treated as absent by the codec
+     */
+    private static <T> Optional<T> skipInvalid(JsonReader reader) throws IOException
+    {
+        reader.skipValue();
+        return Optional.empty();
+    }
+
+    private static void expect(JsonReader reader, JsonToken token) throws IOException
+    {
+        JsonToken actual = reader.peek();
+        if (actual != token)
+        {
+            throw new JsonParseException("Expected " + token + " but got " + actual + " at " + reader.getPath());
+        }
+    }
+
+    private static <T> T require(T value, String key)
+    {
+        if (value == null)
+        {
+            throw new JsonParseException("No key " + key);
+        }
+        return value;
+    }
+
+
+
+    @FunctionalInterface
+    private interface ValueReader<T>
+    {
+        T read(JsonReader reader) throws IOException;
+    }
+}
@@ -1,10 +1,9 @@
 package xfacthd.jsontabs.tabs;
 
-import com.mojang.brigadier.exceptions.CommandSyntaxException;
 import com.mojang.datafixers.util.Either;
 import com.mojang.serialization.Codec;
+import com.mojang.serialization.DataResult;
 import com.mojang.serialization.codecs.RecordCodecBuilder;
-import net.minecraft.nbt.TagParser;
 import net.minecraft.resources.ResourceLocation;
 import net.minecraft.world.item.*;
 import net.minecraftforge.registries.ForgeRegistries;
@@ -13,46 +12,85 @@ import xfacthd.jsontabs.JsonTabs;
 import java.util.List;
 import java.util.function.Supplier;
 
-public record TabEntry(ResourceLocation name, String nbt)
+/**
+ * @param name The item, tag or pattern selecting the item(s) of this entry
+ * @param nbt The SNBT to attach to the item(s), empty if no tag should be attached
+ * @param conditions The conditions the entry depends on, {@link EntryConditions#NONE} if it is unconditional
+ */
+public record TabEntry(ItemSelector name, String nbt, EntryConditions conditions)
 {
-    private TabEntry(ResourceLocation item) { this(item, ""); }
+    private TabEntry(ItemSelector item) { this(item, ""); }
 
+    public TabEntry(ItemSelector name, String nbt) { this(name, nbt, EntryConditions.NONE); }
+
+    /**
+     * Build a stack for this entry. The result is meant to be used as a template and must be copied before
+     * being handed out
+     * @param tabName The name of the tab this entry belongs to
+     * @param errorSupplier Supplier of the message to log if the item doesn't exist
+     * @return The resolved stack or {@link ItemStack#EMPTY} if the item doesn't exist or this entry doesn't name
+     *         a single item
+     */
     public ItemStack toStack(ResourceLocation tabName, Supplier<String> errorSupplier)
     {
-        Item item = ForgeRegistries.ITEMS.getValue(name);
+        Item item = name.isSingleItem() ? ForgeRegistries.ITEMS.getValue(name.location()) : null;
         if (item == null || item == Items.AIR)
         {
             JsonTabs.LOGGER.warn(errorSupplier.get());
             return ItemStack.EMPTY;
         }
+        return createStack(item, tabName);
+    }
 
+    /**
+     * Build a stack of the given item with the tag of this entry attached. Used for items resolved from tags or
+     * patterns. The result is meant to be used as a template and must be copied before being handed out
+     * @param item The item to build the stack from
+     * @param tabName The name of the tab this entry belongs to
+     */
+    public ItemStack createStack(Item item, ResourceLocation tabName)
+    {
         ItemStack result = new ItemStack(item);
-        if (!nbt.isEmpty())
+        NbtPool pool = NbtPool.get();
+        int tagIndex = internTag(pool, tabName);
+        if (tagIndex != NbtPool.NO_TAG)
         {
-            try
-            {
-                result.setTag(TagParser.parseTag(nbt));
-            }
-            catch (CommandSyntaxException e)
-            {
-                JsonTabs.LOGGER.error(
-                        "Found invalid NBT data on item '{}' in tab '{}', tag will not be attached",
-                        name, tabName, e
-                );
-            }
+            // ItemStack#setTag() may modify the tag, the pooled instance must stay untouched
+            result.setTag(pool.get(tagIndex).copy());
         }
         return result;
     }
 
+    /**
+     * Add the tag of this entry to the given pool, the pool reports the tag once if it is invalid
+     * @param pool The pool to add the tag to
+     * @param tabName The name of the tab this entry belongs to
+     * @return The index of the tag in the pool or {@link NbtPool#NO_TAG} if the entry has no or an invalid tag
+     */
+    public int internTag(NbtPool pool, ResourceLocation tabName)
+    {
+        return pool.intern(nbt, name, tabName);
+    }
+
 
 
-    public static final Codec<TabEntry> CODEC_SIMPLE = ResourceLocation.CODEC.xmap(TabEntry::new, TabEntry::name);
+    public static final Codec<TabEntry> CODEC_SIMPLE = ItemSelector.CODEC.xmap(TabEntry::new, TabEntry::name);
 
     public static final Codec<TabEntry> CODEC_DATA = RecordCodecBuilder.create(instance -> instance.group(
-            ResourceLocation.CODEC.fieldOf("name").forGetter(TabEntry::name),
-            Codec.STRING.fieldOf("data").forGetter(TabEntry::nbt)
+            ItemSelector.CODEC.fieldOf("name").forGetter(TabEntry::name),
+            Codec.STRING.optionalFieldOf("data", "").forGetter(TabEntry::nbt),
+            EntryConditions.CODEC.optionalFieldOf("conditions", EntryConditions.NONE).forGetter(TabEntry::conditions)
     ).apply(instance, TabEntry::new));
 
+    public static DataResult<TabEntry> requireSingleItem(TabEntry entry)
+    {
+        if (!entry.name.isSingleItem())
+        {
+            return DataResult.error(() -> "Expected a single item, got '" + entry.name + "'");
+        }
+        return DataResult.success(entry);
+    }
+
     public static TabEntry crossMapTo(Either<TabEntry, TabEntry> either)
     {
         return either.left().orElseGet(() -> either.right().orElseThrow());
@@ -60,7 +98,7 @@ public record TabEntry(ResourceLocation name, String nbt)
 
     public static Either<TabEntry, TabEntry> crossMapFrom(TabEntry entry)
     {
-        return entry.nbt.isEmpty() ? Either.left(entry) : Either.right(entry);
+        return entry.nbt.isEmpty() && entry.conditions.isEmpty() ? Either.left(entry) : Either.right(entry);
     }
 
     public static List<TabEntry> crossMapTo(List<Either<TabEntry, TabEntry>> list)
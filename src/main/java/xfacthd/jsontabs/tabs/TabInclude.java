@@ -0,0 +1,24 @@
+package xfacthd.jsontabs.tabs;
+
+import com.mojang.datafixers.util.Either;
+import com.mojang.serialization.Codec;
+import com.mojang.serialization.codecs.RecordCodecBuilder;
+import net.minecraft.resources.ResourceLocation;
+
+import java.util.List;
+
+/**
+ * @param tab The name of the tab whose contents are included
+ * @param exclude The items, tags or patterns to leave out of the included contents
+ */
+public record TabInclude(ResourceLocation tab, List<ItemSelector> exclude)
+{
+    private static final Codec<TabInclude> CODEC_FULL = RecordCodecBuilder.create(instance -> instance.group(
+            ResourceLocation.CODEC.fieldOf("tab").forGetter(TabInclude::tab),
+            ItemSelector.CODEC.listOf().optionalFieldOf("exclude", List.of()).forGetter(TabInclude::exclude)
+    ).apply(instance, TabInclude::new));
+    public static final Codec<TabInclude> CODEC = Codec.either(ResourceLocation.CODEC, CODEC_FULL).xmap(
+            either -> either.map(tab -> new TabInclude(tab, List.of()), include -> include),
+            include -> include.exclude.isEmpty() ? Either.left(include.tab) : Either.right(include)
+    );
+}
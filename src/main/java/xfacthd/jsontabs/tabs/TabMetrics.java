@@ -0,0 +1,139 @@
+package xfacthd.jsontabs.tabs;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import net.minecraft.resources.ResourceLocation;
+import xfacthd.jsontabs.util.Histogram;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runtime metrics of the definition loading phases and of the display generators of every tab. All counters are
+ * lock-free and cheap enough to be always on
+ */
+public final class TabMetrics
+{
+    /**
+     * Time spent reading a definition file, per file
+     */
+    public static final Histogram FILE_READ = new Histogram();
+    /**
+     * Time spent decoding a definition file, per file
+     */
+    public static final Histogram DECODE = new Histogram();
+    /**
+     * Time spent building a tab from its definition, per tab
+     */
+    public static final Histogram TAB_BUILD = new Histogram();
+    /**
+     * Time spent parsing the SNBT of an entry, per distinct SNBT string
+     */
+    public static final Histogram NBT_PARSE = new Histogram();
+    /**
+     * Time spent building the search index of a tab, per build
+     */
+    public static final Histogram SEARCH_INDEX = new Histogram();
+    private static final Map<ResourceLocation, GeneratorMetrics> GENERATORS = new ConcurrentHashMap<>();
+    private static volatile long lastLoadNanos = 0L;
+
+    /**
+     * {@return the metrics of the display generator of the given tab, created on first use}
+     */
+    public static GeneratorMetrics generator(ResourceLocation tabName)
+    {
+        return GENERATORS.computeIfAbsent(tabName, name -> new GeneratorMetrics());
+    }
+
+    public static void recordLoad(long nanos)
+    {
+        lastLoadNanos = nanos;
+    }
+
+    public static long getLastLoadNanos()
+    {
+        return lastLoadNanos;
+    }
+
+    /**
+     * {@return the generator metrics of all tabs, sorted by the total time spent in the generator}
+     */
+    public static List<Map.Entry<ResourceLocation, GeneratorMetrics>> getGenerators()
+    {
+        List<Map.Entry<ResourceLocation, GeneratorMetrics>> entries = new ArrayList<>(GENERATORS.entrySet());
+        entries.sort(Comparator.comparingLong(
+                (Map.Entry<ResourceLocation, GeneratorMetrics> entry) -> entry.getValue().duration().totalNanos()
+        ).reversed());
+        return entries;
+    }
+
+    /**
+     * Reset all metrics, called before a full load of the definitions
+     */
+    public static void reset()
+    {
+        FILE_READ.reset();
+        DECODE.reset();
+        TAB_BUILD.reset();
+        NBT_PARSE.reset();
+        SEARCH_INDEX.reset();
+        GENERATORS.clear();
+        lastLoadNanos = 0L;
+    }
+
+    public static JsonObject toJson()
+    {
+        JsonObject json = new JsonObject();
+        json.addProperty("timestamp", System.currentTimeMillis());
+        json.addProperty("last_load_ns", lastLoadNanos);
+
+        JsonObject phases = new JsonObject();
+        phases.add("file_read", FILE_READ.toJson());
+        phases.add("decode", DECODE.toJson());
+        phases.add("tab_build", TAB_BUILD.toJson());
+        phases.add("nbt_parse", NBT_PARSE.toJson());
+        phases.add("search_index", SEARCH_INDEX.toJson());
+        json.add("phases", phases);
+
+        JsonObject cache = new JsonObject();
+        cache.addProperty("hits", CachingDisplayGenerator.getTotalHits());
+        cache.addProperty("misses", CachingDisplayGenerator.getTotalMisses());
+        json.add("generator_cache", cache);
+        json.add("nbt_pool", NbtPool.get().getStats().toJson());
+
+        JsonArray tabs = new JsonArray();
+        for (Map.Entry<ResourceLocation, GeneratorMetrics> entry : getGenerators())
+        {
+            JsonObject tab = entry.getValue().toJson();
+            tab.addProperty("name", entry.getKey().toString());
+            tabs.add(tab);
+        }
+        json.add("tabs", tabs);
+        return json;
+    }
+
+
+
+    /**
+     * @param duration The time spent per run of the generator, including replays from the cache
+     * @param emitted The total amount of stacks emitted over all runs
+     */
+    public record GeneratorMetrics(Histogram duration, LongAdder emitted)
+    {
+        GeneratorMetrics() { this(new Histogram(), new LongAdder()); }
+
+        public void record(long nanos, int stacks)
+        {
+            duration.record(nanos);
+            emitted.add(stacks);
+        }
+
+        public JsonObject toJson()
+        {
+            JsonObject json = duration.toJson();
+            json.addProperty("emitted_stacks", emitted.sum());
+            return json;
+        }
+    }
+}
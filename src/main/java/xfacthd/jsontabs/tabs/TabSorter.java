@@ -0,0 +1,319 @@
+package xfacthd.jsontabs.tabs;
+
+import com.google.common.collect.LinkedHashMultimap;
+import com.google.common.collect.Multimap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntHeapPriorityQueue;
+import net.minecraft.resources.ResourceLocation;
+import xfacthd.jsontabs.JsonTabs;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Computes the order of the tabs defined by a set of {@link TabDefinition}s from their {@code after} and
+ * {@code before} entries with a topological sort in O(V log V + E). Whenever several tabs are free to be placed
+ * next, the one defined first is placed, tabs without an ordering constraint between them therefore keep the order
+ * of their definitions. This makes the result independent of hash ordering.
+ * <p>
+ * Names referenced in {@code after} or {@code before} which aren't defined by any definition are kept in the
+ * graph, as they may refer to tabs registered by other mods, and are reported as possible typos. The results of
+ * the last few distinct graphs are cached, so that sorting the active and the precompiled profile alternately
+ * neither sorts again nor reports the same names again
+ */
+public final class TabSorter
+{
+    private static final int CACHE_SIZE = 4;
+    // Access ordered, the least recently used graph is evicted first
+    private static final Map<List<GraphNode>, Result> CACHE = new LinkedHashMap<>(CACHE_SIZE * 2, .75F, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<List<GraphNode>, Result> eldest)
+        {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    /**
+     * Sort the tabs of the given definitions. Definitions which use an unknown vanilla tab are not part of the
+     * order, as they don't produce a tab
+     */
+    public static Result sort(List<TabDefinition> definitions)
+    {
+        List<GraphNode> graph = buildGraph(definitions, VanillaTabs.TABS::containsKey);
+
+        synchronized (CACHE)
+        {
+            Result cached = CACHE.get(graph);
+            if (cached != null)
+            {
+                return cached;
+            }
+        }
+
+        Result result = sortGraph(graph);
+        synchronized (CACHE)
+        {
+            // Another thread may have sorted the same graph in the meantime and already reported its dangling names
+            Result cached = CACHE.putIfAbsent(graph, result);
+            if (cached != null)
+            {
+                return cached;
+            }
+        }
+        result.logDangling();
+        return result;
+    }
+
+    /**
+     * Sort the tabs of the given definitions without caching the result or logging anything, usable without a
+     * running game
+     * @param isVanillaTab Whether the given name is the name of a known vanilla tab
+     */
+    public static Result sort(List<TabDefinition> definitions, Predicate<ResourceLocation> isVanillaTab)
+    {
+        return sortGraph(buildGraph(definitions, isVanillaTab));
+    }
+
+    private static List<GraphNode> buildGraph(List<TabDefinition> definitions, Predicate<ResourceLocation> isVanillaTab)
+    {
+        return definitions.stream()
+                .filter(def -> !def.useVanilla() || isVanillaTab.test(def.name()))
+                .map(def -> new GraphNode(def.name(), def.after(), def.before()))
+                .toList();
+    }
+
+    private static Result sortGraph(List<GraphNode> graph)
+    {
+        // Defined tabs get the first indices in definition order, external names follow in order of first reference
+        Map<ResourceLocation, Integer> indices = new HashMap<>();
+        List<ResourceLocation> names = new ArrayList<>();
+        for (GraphNode node : graph)
+        {
+            indices.put(node.name(), names.size());
+            names.add(node.name());
+        }
+        int definedCount = names.size();
+
+        List<IntArrayList> successors = new ArrayList<>();
+        List<IntArrayList> predecessors = new ArrayList<>();
+        Multimap<ResourceLocation, ResourceLocation> externalEdges = LinkedHashMultimap.create();
+        Map<ResourceLocation, ResourceLocation> dangling = new LinkedHashMap<>();
+        for (GraphNode node : graph)
+        {
+            int idx = indices.get(node.name());
+            for (ResourceLocation after : node.after())
+            {
+                int other = indexOf(after, indices, names, node.name(), dangling);
+                addEdge(successors, predecessors, other, idx);
+                if (other >= definedCount)
+                {
+                    externalEdges.put(after, node.name());
+                }
+            }
+            for (ResourceLocation before : node.before())
+            {
+                int other = indexOf(before, indices, names, node.name(), dangling);
+                addEdge(successors, predecessors, idx, other);
+                if (other >= definedCount)
+                {
+                    externalEdges.put(node.name(), before);
+                }
+            }
+        }
+
+        int count = names.size();
+        int[] inDegree = new int[count];
+        for (int i = 0; i < count; i++)
+        {
+            inDegree[i] = predecessors.size() > i ? predecessors.get(i).size() : 0;
+        }
+
+        // Kahn's algorithm always taking the lowest index ready to be placed provides the stable tie-break
+        IntHeapPriorityQueue ready = new IntHeapPriorityQueue(count);
+        for (int i = 0; i < count; i++)
+        {
+            if (inDegree[i] == 0)
+            {
+                ready.enqueue(i);
+            }
+        }
+        int[] sorted = new int[count];
+        int tail = 0;
+        while (!ready.isEmpty())
+        {
+            int idx = ready.dequeueInt();
+            sorted[tail++] = idx;
+            IntArrayList next = successors.size() > idx ? successors.get(idx) : null;
+            if (next == null)
+            {
+                continue;
+            }
+            for (int i = 0; i < next.size(); i++)
+            {
+                int succ = next.getInt(i);
+                if (--inDegree[succ] == 0)
+                {
+                    ready.enqueue(succ);
+                }
+            }
+        }
+
+        if (tail < count)
+        {
+            return new Result(List.of(), LinkedHashMultimap.create(), findCycles(names, predecessors, inDegree), dangling);
+        }
+
+        List<ResourceLocation> order = new ArrayList<>(definedCount);
+        for (int i = 0; i < count; i++)
+        {
+            if (sorted[i] < definedCount)
+            {
+                order.add(names.get(sorted[i]));
+            }
+        }
+
+        // A chain over the defined tabs fully determines their order, edges to external tabs are kept as they are
+        Multimap<ResourceLocation, ResourceLocation> edges = LinkedHashMultimap.create();
+        for (int i = 1; i < order.size(); i++)
+        {
+            edges.put(order.get(i - 1), order.get(i));
+        }
+        edges.putAll(externalEdges);
+
+        return new Result(List.copyOf(order), edges, List.of(), dangling);
+    }
+
+    private static int indexOf(
+            ResourceLocation name,
+            Map<ResourceLocation, Integer> indices,
+            List<ResourceLocation> names,
+            ResourceLocation referrer,
+            Map<ResourceLocation, ResourceLocation> dangling
+    )
+    {
+        Integer idx = indices.get(name);
+        if (idx == null)
+        {
+            idx = names.size();
+            indices.put(name, idx);
+            names.add(name);
+            dangling.put(name, referrer);
+        }
+        return idx;
+    }
+
+    private static void addEdge(List<IntArrayList> successors, List<IntArrayList> predecessors, int from, int to)
+    {
+        getOrCreate(successors, from).add(to);
+        getOrCreate(predecessors, to).add(from);
+    }
+
+    private static IntArrayList getOrCreate(List<IntArrayList> lists, int idx)
+    {
+        while (lists.size() <= idx)
+        {
+            lists.add(new IntArrayList());
+        }
+        return lists.get(idx);
+    }
+
+    /**
+     * Every node left with a non-zero in-degree after the sort has a predecessor which is also left over, walking
+     * the predecessors from any of them therefore always ends in a cycle
+     */
+    private static List<List<ResourceLocation>> findCycles(List<ResourceLocation> names, List<IntArrayList> predecessors, int[] inDegree)
+    {
+        List<List<ResourceLocation>> cycles = new ArrayList<>();
+        boolean[] visited = new boolean[names.size()];
+        for (int start = 0; start < names.size(); start++)
+        {
+            if (inDegree[start] == 0 || visited[start])
+            {
+                continue;
+            }
+
+            Map<Integer, Integer> positions = new HashMap<>();
+            IntArrayList path = new IntArrayList();
+            int current = start;
+            while (!visited[current])
+            {
+                visited[current] = true;
+                positions.put(current, path.size());
+                path.add(current);
+
+                IntArrayList preds = predecessors.get(current);
+                int next = -1;
+                for (int i = 0; i < preds.size(); i++)
+                {
+                    if (inDegree[preds.getInt(i)] > 0)
+                    {
+                        next = preds.getInt(i);
+                        break;
+                    }
+                }
+                current = next;
+            }
+
+            // The walk may also end in a cycle found by an earlier walk
+            Integer cycleStart = positions.get(current);
+            if (cycleStart != null)
+            {
+                List<ResourceLocation> cycle = new ArrayList<>();
+                for (int i = path.size() - 1; i >= cycleStart; i--)
+                {
+                    cycle.add(names.get(path.getInt(i)));
+                }
+                cycles.add(cycle);
+            }
+        }
+        return cycles;
+    }
+
+
+
+    private record GraphNode(ResourceLocation name, List<ResourceLocation> after, List<ResourceLocation> before) { }
+
+    /**
+     * @param order The defined tabs in sorted order, empty if the graph contains cycles
+     * @param edges The minimal set of edges producing this order, to be handed to Forge
+     * @param cycles The cycles found in the graph, each in the direction of the ordering constraints
+     * @param dangling The referenced names not defined by any definition, mapped to the first definition
+     *                 referencing them
+     */
+    public record Result(
+            List<ResourceLocation> order,
+            Multimap<ResourceLocation, ResourceLocation> edges,
+            List<List<ResourceLocation>> cycles,
+            Map<ResourceLocation, ResourceLocation> dangling
+    )
+    {
+        public boolean hasCycles()
+        {
+            return !cycles.isEmpty();
+        }
+
+        public void logCycles()
+        {
+            StringBuilder report = new StringBuilder();
+            for (List<ResourceLocation> cycle : cycles)
+            {
+                report.append("\n - ");
+                for (ResourceLocation name : cycle)
+                {
+                    report.append(name).append(" -> ");
+                }
+                report.append(cycle.get(0));
+            }
+            JsonTabs.LOGGER.error("Found {} cycle(s) in tab ordering, 'a -> b' means 'a' is sorted before 'b':{}", cycles.size(), report);
+        }
+
+        public void logDangling()
+        {
+            dangling.forEach((name, referrer) -> JsonTabs.LOGGER.warn(
+                    "Tab '{}' is referenced by tab definition '{}' but not defined by any tab definition, " +
+                    "it is either a tab added by another mod or a typo", name, referrer
+            ));
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package xfacthd.jsontabs.util;
+
+import com.google.gson.JsonObject;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of durations in nanoseconds with power-of-two buckets. Recording a value costs two adder
+ * increments and a max update, percentiles are approximated by the upper bound of the bucket they fall into
+ */
+public final class Histogram
+{
+    private static final int BUCKETS = 64;
+
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder total = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0L);
+
+    public Histogram()
+    {
+        for (int i = 0; i < BUCKETS; i++)
+        {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    public void record(long nanos)
+    {
+        long value = Math.max(nanos, 0L);
+        buckets[BUCKETS - Long.numberOfLeadingZeros(value)].increment();
+        count.increment();
+        total.add(value);
+        max.accumulate(value);
+    }
+
+    public long count()
+    {
+        return count.sum();
+    }
+
+    public long totalNanos()
+    {
+        return total.sum();
+    }
+
+    public long maxNanos()
+    {
+        return max.get();
+    }
+
+    public long meanNanos()
+    {
+        long samples = count();
+        return samples == 0 ? 0 : totalNanos() / samples;
+    }
+
+    /**
+     * {@return the upper bound of the bucket containing the given percentile, 0 if nothing was recorded}
+     * @param percentile The percentile in the range {@code [0, 1]}
+     */
+    public long percentileNanos(double percentile)
+    {
+        long samples = count();
+        if (samples == 0)
+        {
+            return 0;
+        }
+
+        long target = Math.max(1, (long) Math.ceil(samples * percentile));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++)
+        {
+            seen += buckets[i].sum();
+            if (seen >= target)
+            {
+                // Bucket i holds values with i significant bits, its upper bound is 2^i - 1
+                return Math.min(i == BUCKETS - 1 ? Long.MAX_VALUE : (1L << i) - 1L, maxNanos());
+            }
+        }
+        return maxNanos();
+    }
+
+    public void reset()
+    {
+        for (LongAdder bucket : buckets)
+        {
+            bucket.reset();
+        }
+        count.reset();
+        total.reset();
+        max.reset();
+    }
+
+    public JsonObject toJson()
+    {
+        JsonObject json = new JsonObject();
+        json.addProperty("count", count());
+        json.addProperty("total_ns", totalNanos());
+        json.addProperty("mean_ns", meanNanos());
+        json.addProperty("p50_ns", percentileNanos(.5));
+        json.addProperty("p99_ns", percentileNanos(.99));
+        json.addProperty("max_ns", maxNanos());
+        return json;
+    }
+
+    /**
+     * {@return a short human-readable summary in milliseconds}
+     */
+    public String summary()
+    {
+        return String.format(
+                "n=%d, total=%.2fms, mean=%.3fms, p99<=%.3fms, max=%.3fms",
+                count(),
+                totalNanos() / 1_000_000D,
+                meanNanos() / 1_000_000D,
+                percentileNanos(.99) / 1_000_000D,
+                maxNanos() / 1_000_000D
+        );
+    }
+}
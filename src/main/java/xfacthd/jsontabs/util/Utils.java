@@ -5,8 +5,8 @@ import com.mojang.serialization.*;
 import com.mojang.serialization.codecs.PrimitiveCodec;
 import net.minecraft.util.GsonHelper;
 
-import java.io.IOException;
-import java.io.Reader;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 
@@ -24,6 +24,19 @@ public final class Utils
         }
     }
 
+    public static JsonObject readJsonBytes(byte[] data, Gson gson)
+    {
+        // Use a reporting decoder to reject malformed input like Files#newBufferedReader() does
+        try (Reader reader = new InputStreamReader(new ByteArrayInputStream(data), StandardCharsets.UTF_8.newDecoder()))
+        {
+            return GsonHelper.fromJson(gson, reader, JsonObject.class);
+        }
+        catch (IOException e)
+        {
+            throw new JsonParseException(e);
+        }
+    }
+
     public static final Codec<Integer> FLEXIBLE_INT_CODEC = new PrimitiveCodec<>()
     {
         @Override
@@ -0,0 +1,434 @@
+package xfacthd.jsontabs.validate;
+
+import com.google.gson.*;
+import com.mojang.serialization.DataResult;
+import net.minecraft.resources.ResourceLocation;
+import xfacthd.jsontabs.tabs.CatchAllOrder;
+import xfacthd.jsontabs.tabs.ItemSelector;
+import xfacthd.jsontabs.tabs.TabDefinition;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Structural checks of a single definition file which locate every problem by its JSON path. Follows the rules of
+ * {@link TabDefinition#CODEC}: invalid required values are errors while invalid optional values are treated as
+ * absent by the codec and are therefore reported as warnings
+ */
+final class DefinitionLinter
+{
+    private static final Set<String> REQUIRED_KEYS = Set.of("name", "after", "before", "icon", "contents");
+    private static final Set<String> BOOLEAN_OPTIONS = Set.of(
+            "use_vanilla", "no_title", "no_scrollbar", "search_bar", "catch_all", "lazy"
+    );
+    private static final Set<String> LOCATION_OPTIONS = Set.of("background", "tab_image");
+    private static final Set<String> COLOR_OPTIONS = Set.of("label_color", "slot_color");
+    private static final String SEARCH_BAR_WIDTH = "search_bar_width";
+    private static final String CATCH_ALL_ORDER = "catch_all_order";
+    private static final String TITLE = "title";
+    private static final String INCLUDE = "include";
+    private static final Set<String> ENTRY_KEYS = Set.of("name", "data", "conditions");
+    private static final Set<String> CONDITION_KEYS = Set.of("mods", "features", "toggles");
+    private static final Set<String> INCLUDE_KEYS = Set.of("tab", "exclude");
+
+    private final String file;
+    private final List<ValidationIssue> issues;
+
+    DefinitionLinter(String file, List<ValidationIssue> issues)
+    {
+        this.file = file;
+        this.issues = issues;
+    }
+
+    void lint(JsonObject json)
+    {
+        JsonElement name = require(json, "name");
+        if (name != null)
+        {
+            checkLocation(name, "$.name");
+        }
+        checkNameList(json, "after");
+        checkNameList(json, "before");
+
+        JsonElement icon = require(json, "icon");
+        if (icon != null)
+        {
+            checkEntry(icon, "$.icon", true);
+        }
+
+        JsonElement contents = require(json, "contents");
+        if (contents != null)
+        {
+            if (!contents.isJsonArray())
+            {
+                error("$.contents", "Expected a list of entries");
+            }
+            else
+            {
+                JsonArray array = contents.getAsJsonArray();
+                for (int i = 0; i < array.size(); i++)
+                {
+                    checkEntry(array.get(i), "$.contents[" + i + "]", false);
+                }
+            }
+        }
+
+        for (Map.Entry<String, JsonElement> entry : json.entrySet())
+        {
+            String key = entry.getKey();
+            JsonElement value = entry.getValue();
+            if (REQUIRED_KEYS.contains(key) || value.isJsonNull())
+            {
+                continue;
+            }
+            checkOption(key, value, "$." + key);
+        }
+    }
+
+    private void checkOption(String key, JsonElement value, String path)
+    {
+        if (BOOLEAN_OPTIONS.contains(key))
+        {
+            // Numbers are accepted as booleans by the codec
+            if (!isBoolean(value) && !isNumber(value))
+            {
+                ignored(path, "a boolean");
+            }
+        }
+        else if (LOCATION_OPTIONS.contains(key))
+        {
+            if (!isString(value) || ResourceLocation.tryParse(value.getAsString()) == null)
+            {
+                ignored(path, "a resource location");
+            }
+        }
+        else if (COLOR_OPTIONS.contains(key))
+        {
+            if (!isNumber(value) && !isBoolean(value) && !isNumericString(value))
+            {
+                ignored(path, "a number or a numeric string");
+            }
+        }
+        else if (key.equals(SEARCH_BAR_WIDTH))
+        {
+            // Booleans are accepted as numbers by the codec
+            if (!isNumber(value) && !isBoolean(value))
+            {
+                ignored(path, "a number");
+            }
+        }
+        else if (key.equals(CATCH_ALL_ORDER))
+        {
+            boolean valid = isString(value) && Arrays.stream(CatchAllOrder.values())
+                    .anyMatch(order -> order.getSerializedName().equals(value.getAsString()));
+            if (!valid)
+            {
+                ignored(path, "one of " + Arrays.stream(CatchAllOrder.values())
+                        .map(order -> "'" + order.getSerializedName() + "'")
+                        .collect(Collectors.joining(", "))
+                );
+            }
+        }
+        else if (key.equals(TITLE))
+        {
+            boolean valid = isString(value) || (value.isJsonObject() && value.getAsJsonObject()
+                    .entrySet()
+                    .stream()
+                    .allMatch(entry -> isString(entry.getValue()))
+            );
+            if (!valid)
+            {
+                ignored(path, "a string or an object of strings by language code");
+            }
+        }
+        else if (key.equals(INCLUDE))
+        {
+            checkIncludes(value, path);
+        }
+        else
+        {
+            warning(path, "Unknown key '" + key + "', it is ignored");
+        }
+    }
+
+    /**
+     * A single invalid include makes the codec ignore all includes, invalid exclusions only make it ignore the
+     * exclusions of their include
+     */
+    private void checkIncludes(JsonElement value, String path)
+    {
+        if (!value.isJsonArray())
+        {
+            ignored(path, "a list of tab names or objects with 'tab' and 'exclude'");
+            return;
+        }
+
+        JsonArray array = value.getAsJsonArray();
+        for (int i = 0; i < array.size(); i++)
+        {
+            JsonElement include = array.get(i);
+            String includePath = path + "[" + i + "]";
+            if (isString(include))
+            {
+                if (ResourceLocation.tryParse(include.getAsString()) == null)
+                {
+                    warning(includePath, "Expected a tab name, all includes are ignored");
+                }
+                continue;
+            }
+            if (!include.isJsonObject())
+            {
+                warning(includePath, "Expected a tab name or an object with 'tab' and 'exclude', all includes are ignored");
+                continue;
+            }
+
+            JsonObject object = include.getAsJsonObject();
+            JsonElement tab = object.get("tab");
+            if (tab == null || !isString(tab) || ResourceLocation.tryParse(tab.getAsString()) == null)
+            {
+                warning(includePath + ".tab", "Expected a tab name, all includes are ignored");
+            }
+
+            JsonElement exclude = object.get("exclude");
+            if (exclude != null && !exclude.isJsonNull())
+            {
+                checkExclusions(exclude, includePath + ".exclude");
+            }
+
+            for (String key : object.keySet())
+            {
+                if (!INCLUDE_KEYS.contains(key))
+                {
+                    warning(includePath + "." + key, "Unknown key '" + key + "', it is ignored");
+                }
+            }
+        }
+    }
+
+    private void checkExclusions(JsonElement exclude, String path)
+    {
+        if (!exclude.isJsonArray())
+        {
+            warning(path, "Expected a list of item names, all exclusions of this include are ignored");
+            return;
+        }
+
+        JsonArray array = exclude.getAsJsonArray();
+        for (int i = 0; i < array.size(); i++)
+        {
+            JsonElement selector = array.get(i);
+            String selectorPath = path + "[" + i + "]";
+            if (!isString(selector))
+            {
+                warning(selectorPath, "Expected an item name, all exclusions of this include are ignored");
+                continue;
+            }
+            ItemSelector.parse(selector.getAsString()).error().ifPresent(err -> warning(
+                    selectorPath, err.message() + ", all exclusions of this include are ignored"
+            ));
+        }
+    }
+
+    private void checkNameList(JsonObject json, String key)
+    {
+        JsonElement list = require(json, key);
+        if (list == null)
+        {
+            return;
+        }
+
+        String path = "$." + key;
+        if (!list.isJsonArray())
+        {
+            error(path, "Expected a list of tab names");
+            return;
+        }
+
+        JsonArray array = list.getAsJsonArray();
+        for (int i = 0; i < array.size(); i++)
+        {
+            checkLocation(array.get(i), path + "[" + i + "]");
+        }
+    }
+
+    private void checkLocation(JsonElement value, String path)
+    {
+        if (!isString(value))
+        {
+            error(path, "Expected a resource location");
+            return;
+        }
+        ResourceLocation.read(value.getAsString()).error().ifPresent(err -> error(path, err.message()));
+    }
+
+    private void checkEntry(JsonElement element, String path, boolean icon)
+    {
+        JsonElement selector = element;
+        String selectorPath = path;
+        if (element.isJsonObject())
+        {
+            JsonObject object = element.getAsJsonObject();
+            selector = object.get("name");
+            selectorPath = path + ".name";
+
+            JsonElement data = object.get("data");
+            if (data != null && !data.isJsonNull() && !isString(data))
+            {
+                warning(path + ".data", "Expected NBT data as a string, the data is ignored");
+            }
+
+            JsonElement conditions = object.get("conditions");
+            if (conditions != null && !conditions.isJsonNull())
+            {
+                if (icon)
+                {
+                    warning(path + ".conditions", "The icon is always shown, its conditions are ignored");
+                }
+                else
+                {
+                    checkConditions(conditions, path + ".conditions");
+                }
+            }
+
+            for (String key : object.keySet())
+            {
+                if (!ENTRY_KEYS.contains(key))
+                {
+                    warning(path + "." + key, "Unknown key '" + key + "', it is ignored");
+                }
+            }
+        }
+        else if (!isString(element))
+        {
+            error(path, "Expected an item name or an object with 'name', 'data' and 'conditions'");
+            return;
+        }
+
+        if (selector == null || selector.isJsonNull())
+        {
+            error(selectorPath, "Missing item name");
+            return;
+        }
+        if (!isString(selector))
+        {
+            error(selectorPath, "Expected an item name");
+            return;
+        }
+
+        DataResult<ItemSelector> result = ItemSelector.parse(selector.getAsString());
+        if (result.error().isPresent())
+        {
+            error(selectorPath, result.error().get().message());
+        }
+        else if (icon && !result.result().orElseThrow().isSingleItem())
+        {
+            error(selectorPath, "Expected a single item, got '" + selector.getAsString() + "'");
+        }
+    }
+
+    private void checkConditions(JsonElement conditions, String path)
+    {
+        if (!conditions.isJsonObject())
+        {
+            warning(path, "Expected an object with 'mods', 'features' or 'toggles', the conditions are ignored");
+            return;
+        }
+
+        JsonObject object = conditions.getAsJsonObject();
+        for (String key : object.keySet())
+        {
+            JsonElement list = object.get(key);
+            String listPath = path + "." + key;
+            if (!CONDITION_KEYS.contains(key))
+            {
+                warning(listPath, "Unknown key '" + key + "', it is ignored");
+                continue;
+            }
+            if (list.isJsonNull())
+            {
+                continue;
+            }
+            if (!list.isJsonArray())
+            {
+                warning(listPath, "Expected a list of names, the conditions are ignored");
+                continue;
+            }
+
+            JsonArray array = list.getAsJsonArray();
+            for (int i = 0; i < array.size(); i++)
+            {
+                JsonElement value = array.get(i);
+                String valuePath = listPath + "[" + i + "]";
+                if (!isString(value))
+                {
+                    warning(valuePath, "Expected a name, the conditions are ignored");
+                }
+                else if (key.equals("features"))
+                {
+                    ResourceLocation.read(value.getAsString()).error().ifPresent(err -> warning(
+                            valuePath, err.message() + ", the conditions are ignored"
+                    ));
+                }
+            }
+        }
+    }
+
+    private JsonElement require(JsonObject json, String key)
+    {
+        JsonElement value = json.get(key);
+        if (value == null || value.isJsonNull())
+        {
+            error("$." + key, "Missing required key '" + key + "'");
+            return null;
+        }
+        return value;
+    }
+
+    private void ignored(String path, String expected)
+    {
+        warning(path, "Expected " + expected + ", the option is ignored");
+    }
+
+    private void error(String path, String message)
+    {
+        issues.add(new ValidationIssue(file, path, ValidationIssue.Severity.ERROR, message));
+    }
+
+    private void warning(String path, String message)
+    {
+        issues.add(new ValidationIssue(file, path, ValidationIssue.Severity.WARNING, message));
+    }
+
+    private static boolean isString(JsonElement value)
+    {
+        return value.isJsonPrimitive() && value.getAsJsonPrimitive().isString();
+    }
+
+    private static boolean isNumber(JsonElement value)
+    {
+        return value.isJsonPrimitive() && value.getAsJsonPrimitive().isNumber();
+    }
+
+    private static boolean isBoolean(JsonElement value)
+    {
+        return value.isJsonPrimitive() && value.getAsJsonPrimitive().isBoolean();
+    }
+
+    private static boolean isNumericString(JsonElement value)
+    {
+        if (!isString(value))
+        {
+            return false;
+        }
+
+        try
+        {
+            Long.decode(value.getAsString());
+            return true;
+        }
+        catch (NumberFormatException e)
+        {
+            return false;
+        }
+    }
+}
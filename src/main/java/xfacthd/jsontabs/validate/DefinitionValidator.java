@@ -0,0 +1,466 @@
+package xfacthd.jsontabs.validate;
+
+import com.google.gson.*;
+import com.mojang.brigadier.exceptions.CommandSyntaxException;
+import com.mojang.serialization.DataResult;
+import com.mojang.serialization.JsonOps;
+import net.minecraft.nbt.TagParser;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.world.flag.FeatureFlags;
+import xfacthd.jsontabs.tabs.*;
+import xfacthd.jsontabs.util.Utils;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Validates a directory of tab definitions without starting the game, meant to be run in CI. Files are listed like
+ * the game lists them, checked in parallel with the {@link DefinitionLinter}, decoded with {@link TabDefinition#CODEC}
+ * and checked against a {@link RegistrySnapshot}. Afterwards the tab names and the ordering of all definitions are
+ * checked with the {@link TabSorter} and their includes with the {@link IncludeResolver}. The issues are written as JSON.
+ * <p>
+ * Usage: {@code DefinitionValidator <definition directory> <registry snapshot> [--output <file>] [--strict]}. The
+ * exit code is 0 if no errors were found, 1 if errors or, with {@code --strict}, warnings were found and 2 if the
+ * validation couldn't run
+ */
+public final class DefinitionValidator
+{
+    public static final int EXIT_VALID = 0;
+    public static final int EXIT_INVALID = 1;
+    public static final int EXIT_FAILURE = 2;
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+
+    public static void main(String[] args)
+    {
+        System.exit(run(args));
+    }
+
+    public static int run(String[] args)
+    {
+        List<String> positional = new ArrayList<>();
+        Path output = null;
+        boolean strict = false;
+        for (int i = 0; i < args.length; i++)
+        {
+            switch (args[i])
+            {
+                case "--strict" -> strict = true;
+                case "--output" ->
+                {
+                    if (i + 1 >= args.length)
+                    {
+                        return usage();
+                    }
+                    output = Path.of(args[++i]);
+                }
+                default -> positional.add(args[i]);
+            }
+        }
+        if (positional.size() != 2)
+        {
+            return usage();
+        }
+
+        try
+        {
+            RegistrySnapshot snapshot = RegistrySnapshot.read(Path.of(positional.get(1)));
+            Report report = validate(Path.of(positional.get(0)), snapshot);
+
+            String json = GSON.toJson(report.toJson());
+            if (output != null)
+            {
+                Path parent = output.toAbsolutePath().getParent();
+                if (parent != null)
+                {
+                    Files.createDirectories(parent);
+                }
+                Files.writeString(output, json);
+            }
+            else
+            {
+                System.out.println(json);
+            }
+
+            System.err.printf(
+                    "Validated %d file(s) with %d definition(s) in %.1fms: %d error(s), %d warning(s)%n",
+                    report.files(), report.definitions(), report.nanos() / 1_000_000D, report.errorCount(), report.warningCount()
+            );
+            boolean failed = report.errorCount() > 0 || (strict && report.warningCount() > 0);
+            return failed ? EXIT_INVALID : EXIT_VALID;
+        }
+        catch (IOException e)
+        {
+            System.err.println("Validation failed: " + e.getMessage());
+            return EXIT_FAILURE;
+        }
+    }
+
+    private static int usage()
+    {
+        System.err.println("Usage: DefinitionValidator <definition directory> <registry snapshot> [--output <file>] [--strict]");
+        return EXIT_FAILURE;
+    }
+
+    /**
+     * Validate all definition files and archives in the given directory
+     */
+    public static Report validate(Path directory, RegistrySnapshot snapshot) throws IOException
+    {
+        long start = System.nanoTime();
+        List<FileSystem> archives = new ArrayList<>();
+        try
+        {
+            List<TabDefinitionLoader.DefinitionFile> files = TabDefinitionLoader.listDirectory(directory, archives);
+            SnapshotChecker checker = new SnapshotChecker(snapshot);
+            List<FileResult> results = files.parallelStream().map(file -> validateFile(file, checker)).toList();
+
+            List<ValidationIssue> issues = new ArrayList<>();
+            results.forEach(result -> issues.addAll(result.issues()));
+            int definitions = checkNamesAndOrder(results, snapshot, issues);
+
+            // The sort is stable, issues of each file stay in the order they were found in
+            issues.sort(Comparator.comparing(ValidationIssue::file));
+            return new Report(directory, files.size(), definitions, issues, System.nanoTime() - start);
+        }
+        finally
+        {
+            TabDefinitionLoader.closeArchives(archives);
+        }
+    }
+
+    private static FileResult validateFile(TabDefinitionLoader.DefinitionFile file, SnapshotChecker checker)
+    {
+        String fileName = file.displayName();
+        List<ValidationIssue> issues = new ArrayList<>();
+
+        JsonObject json;
+        try
+        {
+            json = Utils.readJsonBytes(Files.readAllBytes(file.path()), GSON);
+        }
+        catch (IOException | RuntimeException e)
+        {
+            String message = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+            issues.add(new ValidationIssue(fileName, "$", ValidationIssue.Severity.ERROR, "Failed to read file: " + message));
+            return new FileResult(fileName, null, issues);
+        }
+        if (json == null)
+        {
+            issues.add(new ValidationIssue(fileName, "$", ValidationIssue.Severity.ERROR, "File is empty"));
+            return new FileResult(fileName, null, issues);
+        }
+
+        new DefinitionLinter(fileName, issues).lint(json);
+
+        DataResult<TabDefinition> result = TabDefinition.CODEC.parse(JsonOps.INSTANCE, json);
+        if (result.result().isEmpty())
+        {
+            // The linter locates the problems the codec reports, its message is only needed if the linter missed one
+            if (issues.stream().noneMatch(issue -> issue.severity() == ValidationIssue.Severity.ERROR))
+            {
+                String message = result.error().map(DataResult.PartialResult::message).orElse("Unknown decoding error");
+                issues.add(new ValidationIssue(fileName, "$", ValidationIssue.Severity.ERROR, message));
+            }
+            return new FileResult(fileName, null, issues);
+        }
+
+        TabDefinition definition = result.result().get();
+        checker.check(fileName, definition, json, issues);
+        return new FileResult(fileName, definition, issues);
+    }
+
+    /**
+     * Check the definitions for duplicate names and sort them like the game does
+     * @return The amount of definitions which would be loaded
+     */
+    private static int checkNamesAndOrder(List<FileResult> results, RegistrySnapshot snapshot, List<ValidationIssue> issues)
+    {
+        Map<ResourceLocation, FileResult> byName = new HashMap<>();
+        List<TabDefinition> definitions = new ArrayList<>();
+        for (FileResult result : results)
+        {
+            if (result.definition() == null)
+            {
+                continue;
+            }
+
+            FileResult previous = byName.putIfAbsent(result.definition().name(), result);
+            if (previous != null)
+            {
+                issues.add(new ValidationIssue(result.file(), "$.name", ValidationIssue.Severity.ERROR, String.format(
+                        "Found duplicated tab name '%s', previously found in '%s'", result.definition().name(), previous.file()
+                )));
+                continue;
+            }
+            definitions.add(result.definition());
+        }
+
+        TabSorter.Result order = TabSorter.sort(definitions, snapshot.vanillaTabs()::contains);
+        for (List<ResourceLocation> cycle : order.cycles())
+        {
+            String description = cycle.stream().map(ResourceLocation::toString).collect(Collectors.joining(" -> ")) + " -> " + cycle.get(0);
+            for (ResourceLocation name : cycle)
+            {
+                FileResult result = byName.get(name);
+                if (result != null)
+                {
+                    issues.add(new ValidationIssue(result.file(), "$", ValidationIssue.Severity.ERROR,
+                            "Tab is part of an ordering cycle, all tabs fall back to vanilla ('a -> b' means 'a' is sorted before 'b'): " + description
+                    ));
+                }
+            }
+        }
+
+        order.dangling().forEach((name, referrer) ->
+        {
+            if (!snapshot.tabs().contains(name))
+            {
+                FileResult result = byName.get(referrer);
+                issues.add(new ValidationIssue(result.file(), findReference(result.definition(), name), ValidationIssue.Severity.WARNING,
+                        "Tab '" + name + "' is not defined by any tab definition or registered by any mod in the snapshot, it is likely a typo"
+                ));
+            }
+        });
+
+        IncludeResolver.Result includes = IncludeResolver.resolve(definitions);
+        for (List<ResourceLocation> cycle : includes.cycles())
+        {
+            String description = cycle.stream().map(ResourceLocation::toString).collect(Collectors.joining(" -> ")) + " -> " + cycle.get(0);
+            for (ResourceLocation name : cycle)
+            {
+                FileResult result = byName.get(name);
+                issues.add(new ValidationIssue(result.file(), "$.include", ValidationIssue.Severity.ERROR,
+                        "Tab is part of an include cycle, all tabs fall back to vanilla ('a -> b' means 'a' includes 'b'): " + description
+                ));
+            }
+        }
+
+        includes.unresolved().forEach((referrer, name) ->
+        {
+            FileResult result = byName.get(referrer);
+            issues.add(new ValidationIssue(result.file(), findInclude(result.definition(), name), ValidationIssue.Severity.WARNING,
+                    "Tab '" + name + "' is not defined by any tab definition or uses a vanilla tab, the include is ignored"
+            ));
+        });
+        return definitions.size();
+    }
+
+    private static String findInclude(TabDefinition definition, ResourceLocation name)
+    {
+        List<TabInclude> includes = definition.includes();
+        for (int i = 0; i < includes.size(); i++)
+        {
+            if (includes.get(i).tab().equals(name))
+            {
+                return "$.include[" + i + "]";
+            }
+        }
+        return "$.include";
+    }
+
+    private static String findReference(TabDefinition definition, ResourceLocation name)
+    {
+        int idx = definition.after().indexOf(name);
+        if (idx != -1)
+        {
+            return "$.after[" + idx + "]";
+        }
+        return "$.before[" + definition.before().indexOf(name) + "]";
+    }
+
+
+
+    private record FileResult(String file, TabDefinition definition, List<ValidationIssue> issues) { }
+
+    /**
+     * @param directory The validated directory
+     * @param files The amount of definition files found, including archive entries
+     * @param definitions The amount of definitions which would be loaded
+     * @param issues All issues, grouped by file
+     * @param nanos The time taken by the validation
+     */
+    public record Report(Path directory, int files, int definitions, List<ValidationIssue> issues, long nanos)
+    {
+        public long errorCount()
+        {
+            return issues.stream().filter(issue -> issue.severity() == ValidationIssue.Severity.ERROR).count();
+        }
+
+        public long warningCount()
+        {
+            return issues.stream().filter(issue -> issue.severity() == ValidationIssue.Severity.WARNING).count();
+        }
+
+        public JsonObject toJson()
+        {
+            JsonObject json = new JsonObject();
+            json.addProperty("directory", directory.toAbsolutePath().normalize().toString());
+            json.addProperty("files", files);
+            json.addProperty("definitions", definitions);
+            json.addProperty("errors", errorCount());
+            json.addProperty("warnings", warningCount());
+            json.addProperty("duration_ms", nanos / 1_000_000D);
+            JsonArray issuesJson = new JsonArray(issues.size());
+            issues.forEach(issue -> issuesJson.add(issue.toJson()));
+            json.add("issues", issuesJson);
+            return json;
+        }
+    }
+
+    /**
+     * Checks decoded definitions against the registry snapshot. Pattern matches and SNBT parse results are cached
+     * as the same selectors and tags tend to repeat across many files
+     */
+    private static final class SnapshotChecker
+    {
+        private final RegistrySnapshot snapshot;
+        private final Map<ItemSelector, Boolean> patternMatches = new ConcurrentHashMap<>();
+        private final Map<String, Optional<String>> nbtErrors = new ConcurrentHashMap<>();
+
+        SnapshotChecker(RegistrySnapshot snapshot)
+        {
+            this.snapshot = snapshot;
+        }
+
+        void check(String file, TabDefinition definition, JsonObject json, List<ValidationIssue> issues)
+        {
+            definition.findIgnoredOptions().forEach(message -> issues.add(
+                    new ValidationIssue(file, "$", ValidationIssue.Severity.WARNING, message)
+            ));
+
+            if (definition.useVanilla())
+            {
+                if (!snapshot.vanillaTabs().contains(definition.name()))
+                {
+                    issues.add(new ValidationIssue(file, "$.name", ValidationIssue.Severity.ERROR,
+                            "Tab definition is set to use vanilla tab but '" + definition.name() + "' is not a known vanilla tab, tab will not be added"
+                    ));
+                }
+                else if (!definition.contents().isEmpty())
+                {
+                    issues.add(new ValidationIssue(file, "$.contents", ValidationIssue.Severity.WARNING,
+                            "Tab definition is set to use vanilla tab and specifies contents, contents will be ignored"
+                    ));
+                }
+                return;
+            }
+
+            checkEntry(file, definition.icon(), json.get("icon"), "$.icon", issues);
+            if (definition.contents().isEmpty() && definition.includes().isEmpty() && !definition.catchAll())
+            {
+                issues.add(new ValidationIssue(file, "$.contents", ValidationIssue.Severity.WARNING,
+                        "Tab definition doesn't specify any contents"
+                ));
+            }
+
+            JsonArray contents = json.getAsJsonArray("contents");
+            for (int i = 0; i < definition.contents().size(); i++)
+            {
+                checkEntry(file, definition.contents().get(i), contents.get(i), "$.contents[" + i + "]", issues);
+            }
+
+            for (int i = 0; i < definition.includes().size(); i++)
+            {
+                List<ItemSelector> exclude = definition.includes().get(i).exclude();
+                for (int j = 0; j < exclude.size(); j++)
+                {
+                    String problem = findProblem(exclude.get(j));
+                    if (problem != null)
+                    {
+                        issues.add(new ValidationIssue(file, "$.include[" + i + "].exclude[" + j + "]", ValidationIssue.Severity.WARNING,
+                                problem + ", the exclusion has no effect"
+                        ));
+                    }
+                }
+            }
+        }
+
+        private void checkEntry(String file, TabEntry entry, JsonElement element, String path, List<ValidationIssue> issues)
+        {
+            String namePath = element.isJsonObject() ? path + ".name" : path;
+            String problem = findProblem(entry.name());
+            if (problem != null)
+            {
+                issues.add(new ValidationIssue(file, namePath, ValidationIssue.Severity.WARNING, problem));
+            }
+
+            if (!entry.nbt().isEmpty())
+            {
+                nbtErrors.computeIfAbsent(entry.nbt(), SnapshotChecker::parseNbt).ifPresent(error -> issues.add(
+                        new ValidationIssue(file, path + ".data", ValidationIssue.Severity.WARNING, "Invalid NBT data, it is ignored: " + error)
+                ));
+            }
+
+            List<ResourceLocation> features = entry.conditions().features();
+            for (int i = 0; i < features.size(); i++)
+            {
+                String featurePath = path + ".conditions.features[" + i + "]";
+                FeatureFlags.REGISTRY.fromNames(List.of(features.get(i)), unknown -> issues.add(new ValidationIssue(
+                        file, featurePath, ValidationIssue.Severity.WARNING, "Unknown feature flag '" + unknown + "', it is ignored"
+                )));
+            }
+        }
+
+        /**
+         * {@return a description of why the selector doesn't select any item, null if it selects at least one}
+         */
+        private String findProblem(ItemSelector selector)
+        {
+            return switch (selector.type())
+            {
+                case ITEM -> snapshot.items().contains(selector.location()) ? null : "Unknown item '" + selector + "'";
+                case TAG ->
+                {
+                    Set<ResourceLocation> items = snapshot.tags().get(selector.location());
+                    if (items == null)
+                    {
+                        yield "Unknown item tag '" + selector + "'";
+                    }
+                    yield items.isEmpty() ? "Item tag '" + selector + "' is empty" : null;
+                }
+                case NAMESPACE, PREFIX, SUFFIX -> patternMatches.computeIfAbsent(selector, this::matchesAny)
+                        ? null
+                        : "Item pattern '" + selector + "' doesn't match any item";
+            };
+        }
+
+        private boolean matchesAny(ItemSelector selector)
+        {
+            for (ResourceLocation item : snapshot.items())
+            {
+                if (selector.namespace() != null && !selector.namespace().equals(item.getNamespace()))
+                {
+                    continue;
+                }
+
+                boolean matches = switch (selector.type())
+                {
+                    case PREFIX -> item.getPath().startsWith(selector.path());
+                    case SUFFIX -> item.getPath().endsWith(selector.path());
+                    default -> true;
+                };
+                if (matches)
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static Optional<String> parseNbt(String snbt)
+        {
+            try
+            {
+                TagParser.parseTag(snbt);
+                return Optional.empty();
+            }
+            catch (CommandSyntaxException e)
+            {
+                return Optional.of(e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package xfacthd.jsontabs.validate;
+
+import com.google.gson.*;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.world.item.CreativeModeTab;
+import net.minecraft.world.item.Item;
+import net.minecraft.world.item.Items;
+import net.minecraftforge.common.CreativeModeTabRegistry;
+import net.minecraftforge.registries.ForgeRegistries;
+import net.minecraftforge.registries.tags.ITagManager;
+import xfacthd.jsontabs.tabs.JsonTabManager;
+import xfacthd.jsontabs.tabs.VanillaTabs;
+import xfacthd.jsontabs.util.Utils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * The registry state the {@link DefinitionValidator} checks definitions against, exported from a running instance
+ * with {@code /jsontabs export_snapshot} and read back without starting the game
+ * @param items The names of all registered items except air
+ * @param tags The names of all item tags and their items
+ * @param vanillaTabs The names of the vanilla tabs definitions can use
+ * @param tabs The names of all tabs registered by the game and by other mods
+ */
+public record RegistrySnapshot(
+        Set<ResourceLocation> items,
+        Map<ResourceLocation, Set<ResourceLocation>> tags,
+        Set<ResourceLocation> vanillaTabs,
+        Set<ResourceLocation> tabs
+)
+{
+    public static final String FILE_NAME = "registry_snapshot.json";
+    private static final int FORMAT_VERSION = 1;
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+
+    /**
+     * Capture the current registry state, must only be called in a running game after the tags are loaded
+     */
+    public static RegistrySnapshot capture()
+    {
+        Set<ResourceLocation> items = new TreeSet<>(ForgeRegistries.ITEMS.getKeys());
+        // Air is neither a valid icon nor matched by patterns
+        items.remove(ForgeRegistries.ITEMS.getKey(Items.AIR));
+
+        Map<ResourceLocation, Set<ResourceLocation>> tags = new TreeMap<>();
+        ITagManager<Item> tagManager = Objects.requireNonNull(ForgeRegistries.ITEMS.tags());
+        tagManager.getTagNames().forEach(key ->
+        {
+            Set<ResourceLocation> tagItems = new TreeSet<>();
+            tagManager.getTag(key).forEach(item -> tagItems.add(ForgeRegistries.ITEMS.getKey(item)));
+            tags.put(key.location(), tagItems);
+        });
+
+        Set<ResourceLocation> tabs = new TreeSet<>();
+        for (CreativeModeTab tab : CreativeModeTabRegistry.getSortedCreativeModeTabs())
+        {
+            ResourceLocation name = CreativeModeTabRegistry.getName(tab);
+            if (name != null)
+            {
+                tabs.add(name);
+            }
+        }
+        // The tabs built from the current definitions must not hide references to tabs which no longer exist
+        JsonTabManager.getTabOrder().stream()
+                .filter(name -> !VanillaTabs.TABS.containsKey(name))
+                .forEach(tabs::remove);
+
+        return new RegistrySnapshot(items, tags, new TreeSet<>(VanillaTabs.TABS.keySet()), tabs);
+    }
+
+    public static RegistrySnapshot read(Path path) throws IOException
+    {
+        try
+        {
+            JsonObject json = Utils.readJsonFile(path, GSON);
+            int version = json.has("version") ? json.get("version").getAsInt() : -1;
+            if (version != FORMAT_VERSION)
+            {
+                throw new IOException("Registry snapshot '" + path + "' has unsupported version " + version + ", export it again");
+            }
+
+            Map<ResourceLocation, Set<ResourceLocation>> tags = new HashMap<>();
+            for (Map.Entry<String, JsonElement> entry : json.getAsJsonObject("tags").entrySet())
+            {
+                tags.put(new ResourceLocation(entry.getKey()), readNames(entry.getValue().getAsJsonArray()));
+            }
+
+            return new RegistrySnapshot(
+                    readNames(json.getAsJsonArray("items")),
+                    tags,
+                    readNames(json.getAsJsonArray("vanilla_tabs")),
+                    readNames(json.getAsJsonArray("tabs"))
+            );
+        }
+        catch (RuntimeException e)
+        {
+            throw new IOException("Malformed registry snapshot '" + path + "'", e);
+        }
+    }
+
+    public void write(Path path) throws IOException
+    {
+        JsonObject json = new JsonObject();
+        json.addProperty("version", FORMAT_VERSION);
+        json.add("items", writeNames(items));
+        JsonObject tagsJson = new JsonObject();
+        tags.forEach((tag, tagItems) -> tagsJson.add(tag.toString(), writeNames(tagItems)));
+        json.add("tags", tagsJson);
+        json.add("vanilla_tabs", writeNames(vanillaTabs));
+        json.add("tabs", writeNames(tabs));
+
+        Files.createDirectories(path.getParent());
+        Files.writeString(path, GSON.toJson(json));
+    }
+
+    private static Set<ResourceLocation> readNames(JsonArray array)
+    {
+        Set<ResourceLocation> names = new HashSet<>(array.size());
+        for (JsonElement element : array)
+        {
+            names.add(new ResourceLocation(element.getAsString()));
+        }
+        return names;
+    }
+
+    private static JsonArray writeNames(Set<ResourceLocation> names)
+    {
+        JsonArray array = new JsonArray(names.size());
+        names.forEach(name -> array.add(name.toString()));
+        return array;
+    }
+}
@@ -0,0 +1,44 @@
+package xfacthd.jsontabs.validate;
+
+import com.google.gson.JsonObject;
+
+import java.util.Locale;
+
+/**
+ * @param file The display name of the file the issue was found in
+ * @param path The JSON path of the offending value, {@code $} for issues concerning the whole definition
+ * @param severity Whether the issue prevents the definition from loading
+ * @param message The description of the issue
+ */
+public record ValidationIssue(String file, String path, Severity severity, String message)
+{
+    public JsonObject toJson()
+    {
+        JsonObject json = new JsonObject();
+        json.addProperty("file", file);
+        json.addProperty("path", path);
+        json.addProperty("severity", severity.name().toLowerCase(Locale.ROOT));
+        json.addProperty("message", message);
+        return json;
+    }
+
+    @Override
+    public String toString()
+    {
+        return severity + " " + file + " " + path + ": " + message;
+    }
+
+
+
+    public enum Severity
+    {
+        /**
+         * The definition fails to load or makes the whole load fall back to the vanilla tabs
+         */
+        ERROR,
+        /**
+         * The definition loads, but part of it is ignored or has no effect
+         */
+        WARNING
+    }
+}